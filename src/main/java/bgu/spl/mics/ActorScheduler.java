@@ -0,0 +1,160 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs micro-services on a shared {@link ForkJoinPool} instead of on a thread each.
+ * A micro-service is scheduled on the pool only when its mailbox is signalled - a message
+ * was put into it or a broadcast it subscribed to was sent - and then handles a bounded
+ * batch of the messages waiting for it and yields the pool thread, so thousands of
+ * micro-services can share a thread per core.
+ * <p>
+ * The micro-services run unchanged: {@link MicroService#initialize()} is called in their
+ * first turn and their callbacks are called exactly as by their own event loop.
+ * A callback that blocks in {@link Future#get()} lets the pool add a thread for the time it waits.
+ */
+public class ActorScheduler {
+
+	// fields
+
+	public static final int DEFAULT_BATCH_SIZE = 64; // the default amount of messages a micro-service handles in a single turn
+
+	private final ForkJoinPool pool;
+	private final int batchSize;
+	private final MessageBusImpl messageBus;
+	private final AtomicLong runningServices; // the micro-services that did not terminate yet, plus one for the scheduler itself - unlike the parties of a phaser, never limited
+	private final CountDownLatch allTerminated; // released once the count of the running services reached zero
+
+	// constructors
+
+	public ActorScheduler() {
+
+		this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+	}
+
+	/**
+	 * @param parallelism The amount of pool threads running micro-services at the same time
+	 * @param batchSize   The maximal amount of messages a micro-service handles before yielding its pool thread
+	 */
+	public ActorScheduler(int parallelism, int batchSize) {
+
+		if (batchSize < 1)
+			throw new IllegalArgumentException("The batch size of a scheduler must be positive");
+
+		pool = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true); // FIFO scheduling of the turns
+		this.batchSize = batchSize;
+		messageBus = MessageBusImpl.getInstance();
+		runningServices = new AtomicLong(1);
+		allTerminated = new CountDownLatch(1);
+	}
+
+	// methods
+
+	/**
+	 * Starts running the micro-service {@code m} on the pool - it registers and initializes in its first turn
+	 * @param m The micro-service to run - must not be run by any thread
+	 */
+	public void start(MicroService m) {
+
+		runningServices.incrementAndGet();
+		new Actor(m).schedule();
+	}
+
+	/**
+	 * Waits until all the started micro-services terminated, and shuts the pool down.
+	 * May be called only once, after all the micro-services were started.
+	 * @param timeout The maximal time to wait
+	 * @param unit    The time unit of {@code timeout}
+	 * @return true if all the micro-services terminated, false if the time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+		countDown(); // the scheduler's own count - no micro-service is started from now on
+
+		try {
+			return allTerminated.await(timeout, unit);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Counts down a micro-service that terminated, or the scheduler itself, and releases the waiting thread once none is left
+	 */
+	private void countDown() {
+
+		if (runningServices.decrementAndGet() == 0)
+			allTerminated.countDown();
+	}
+
+	/**
+	 * A micro-service run by the scheduler - scheduled at most once at any time, so its turns never overlap
+	 */
+	private final class Actor implements Runnable {
+
+		private final MicroService microService;
+		private final AtomicBoolean scheduled; // true from the moment a turn is submitted to the pool until it yields
+		private boolean started;
+
+		private Actor(MicroService microService) {
+
+			this.microService = microService;
+			scheduled = new AtomicBoolean();
+		}
+
+		/**
+		 * Submits a turn of the micro-service to the pool unless one is pending or running
+		 */
+		private void schedule() {
+
+			if (scheduled.compareAndSet(false, true))
+				pool.execute(this);
+		}
+
+		/**
+		 * A single turn of the micro-service
+		 */
+		@Override
+		public void run() {
+
+			boolean terminated;
+
+			try {
+				if (!started) {
+					started = true;
+					microService.start();
+					messageBus.setSignalListener(microService, this::schedule); // from now on every signal of the mailbox schedules a turn
+				}
+
+				terminated = microService.runTurn(batchSize);
+			} catch (RuntimeException | Error exception) {
+				stop(); // a callback threw - the micro-service is dead, as its own thread would have been
+				throw exception;
+			}
+
+			if (terminated) {
+				stop();
+				return;
+			}
+
+			// yield - and schedule another turn if messages arrived while the flag was still set, as their signal was dropped
+			scheduled.set(false);
+			if (messageBus.hasMessages(microService))
+				schedule();
+		}
+
+		/**
+		 * Unregisters the micro-service after its last turn - the scheduled flag stays set, so it is never scheduled again
+		 */
+		private void stop() {
+
+			microService.finish();
+			countDown();
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An append-only log of the {@link Broadcast} messages of a single type.
+ * Sending a broadcast appends it to the log once, whatever the amount of subscribers,
+ * and signals the subscribers' mailboxes. Each subscriber reads the log at its own
+ * pace through a {@link Cursor}; broadcasts read by all the subscribers are no longer
+ * referenced and are collected by the GC.
+ * <p>
+ * Only the copy per subscriber is gone - waking the subscribers still takes a {@link Mailbox#signal()}
+ * per subscriber on every append, so sending a broadcast remains O(subscribers). The wakeup stays per
+ * mailbox because a subscriber parks on its own mailbox, and an {@link ActorScheduler} learns through
+ * the signal listener of each mailbox which of its micro-services have work.
+ */
+class BroadcastLog {
+
+	// fields
+
+	private final AtomicReference<Node> tail; // the last appended node - the log starts with an empty node
+	private volatile Mailbox[] subscriberMailboxes; // the mailboxes to signal on append - replaced as a whole on every change
+	private volatile MessageLane lane; // the lane the broadcasts are read in
+	private final LongAdder appendedBroadcasts; // the amount of broadcasts appended so far
+
+	// constructor
+
+	BroadcastLog() {
+
+		tail = new AtomicReference<>(new Node(null));
+		subscriberMailboxes = new Mailbox[0];
+		lane = MessageLane.CONTROL;
+		appendedBroadcasts = new LongAdder();
+	}
+
+	// methods
+
+	/**
+	 * Appends the broadcast {@code b} to the log and signals all the subscribers - one signal per subscriber
+	 * @param b The broadcast to append
+	 */
+	void append(Broadcast b) {
+
+		Node appendedNode = new Node(b);
+		tail.getAndSet(appendedNode).next = appendedNode; // link the node after the previous tail
+		appendedBroadcasts.increment();
+
+		for (Mailbox subscriberMailbox : subscriberMailboxes)
+			subscriberMailbox.signal();
+	}
+
+	/**
+	 * @return The amount of broadcasts appended to the log so far
+	 */
+	long getAppendedBroadcasts() {
+
+		return appendedBroadcasts.sum();
+	}
+
+	/**
+	 * @return The lane the broadcasts of the log are read in
+	 */
+	MessageLane getLane() {
+
+		return lane;
+	}
+
+	/**
+	 * @param lane The lane the broadcasts of the log are read in
+	 */
+	void setLane(MessageLane lane) {
+
+		this.lane = lane;
+	}
+
+	/**
+	 * Subscribes a mailbox to the log. The returned cursor reads only broadcasts appended from now on.
+	 * @param mailbox The mailbox of the subscribing micro-service - signalled on every append
+	 * @return A cursor positioned at the end of the log
+	 */
+	synchronized Cursor subscribe(Mailbox mailbox) {
+
+		Mailbox[] current = subscriberMailboxes;
+		Mailbox[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = mailbox;
+		subscriberMailboxes = updated;
+
+		return new Cursor(this, tail.get());
+	}
+
+	/**
+	 * Stops signalling the mailbox {@code mailbox} on appends
+	 * @param mailbox The mailbox of the unsubscribing micro-service
+	 */
+	synchronized void unsubscribe(Mailbox mailbox) {
+
+		Mailbox[] current = subscriberMailboxes;
+
+		for (int i = 0; i < current.length; i++)
+			if (current[i] == mailbox) {
+
+				Mailbox[] updated = new Mailbox[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				subscriberMailboxes = updated;
+				return;
+			}
+	}
+
+	/**
+	 * A single node of the log
+	 */
+	private static final class Node {
+
+		private final Broadcast broadcast;
+		private volatile Node next; // null until the next broadcast is appended
+
+		private Node(Broadcast broadcast) {
+
+			this.broadcast = broadcast;
+		}
+	}
+
+	/**
+	 * The reading position of a single subscriber in the log - used only by the subscriber's event loop
+	 */
+	static final class Cursor {
+
+		private final BroadcastLog log;
+		private Node position; // the last node read through this cursor
+
+		private Cursor(BroadcastLog log, Node position) {
+
+			this.log = log;
+			this.position = position;
+		}
+
+		/**
+		 * Advances the cursor to the next broadcast in the log
+		 * @return The next broadcast, or null if the cursor is at the end of the log
+		 */
+		Broadcast next() {
+
+			Node nextNode = position.next;
+
+			if (nextNode == null)
+				return null;
+
+			position = nextNode;
+			return nextNode.broadcast;
+		}
+
+		/**
+		 * @return true if there are broadcasts in the log the cursor did not read yet
+		 */
+		boolean hasNext() {
+
+			return position.next != null;
+		}
+
+		/**
+		 * @return The log this cursor reads
+		 */
+		BroadcastLog getLog() {
+
+			return log;
+		}
+	}
+}
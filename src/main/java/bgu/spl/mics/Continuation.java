@@ -0,0 +1,46 @@
+package bgu.spl.mics;
+
+/**
+ * The message in which the {@link MessageBus} delivers a continuation registered by
+ * {@link MicroService#whenResolved(Future, Callback)} to the mailbox of its micro-service,
+ * once the future it waited for is resolved - so the continuation runs on the
+ * micro-service's own event loop, like the callback of any other message.
+ * <p>
+ * @param <T> The type of the result the continuation is called with.
+ */
+final class Continuation<T> implements Message {
+
+	// fields
+
+	private final Callback<T> callback;
+	private final T result;
+	private final EventEnvelope<?> envelope; // the envelope of the event whose handling registered the continuation, or null
+
+	// constructor
+
+	Continuation(Callback<T> callback, T result, EventEnvelope<?> envelope) {
+
+		this.callback = callback;
+		this.result = result;
+		this.envelope = envelope;
+	}
+
+	// methods
+
+	/**
+	 * @return The envelope of the event whose handling registered the continuation, or null if it was not registered
+	 *         while handling an event - the continuation carries on the handling of that event, and may complete it
+	 */
+	EventEnvelope<?> getEnvelope() {
+
+		return envelope;
+	}
+
+	/**
+	 * Calls the continuation with the result of the future it waited for
+	 */
+	void run() {
+
+		callback.call(result);
+	}
+}
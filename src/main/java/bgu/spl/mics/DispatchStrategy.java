@@ -0,0 +1,42 @@
+package bgu.spl.mics;
+
+import java.util.List;
+
+/**
+ * A dispatch strategy decides which of the micro-services subscribed to an {@link Event}
+ * type receives each event of that type sent through the {@link MessageBus}.
+ * Each event type has its own strategy instance, set with
+ * {@link MessageBusImpl#setDispatchStrategy(Class, DispatchStrategy)}; by default
+ * events are dispatched by a {@link RoundRobinDispatch}.
+ * <p>
+ * Strategies are called concurrently by all the senders of the event type, so they must be thread-safe.
+ */
+public interface DispatchStrategy {
+
+    /**
+     * Chooses the micro-service that receives the event {@code event}.
+     * <p>
+     * @param event      The event being sent.
+     * @param candidates The mailboxes of the micro-services subscribed to the type of {@code event},
+     *                   never empty. The array must not be modified.
+     * @return The index in {@code candidates} of the chosen micro-service.
+     */
+    int select(Event<?> event, Mailbox[] candidates);
+
+    /**
+     * Chooses the micro-services that receive a batch of events of the same type, sent
+     * together using {@link MessageBus#sendEvents(List)}. By default {@link #select(Event, Mailbox[])}
+     * is called for each of the events.
+     * <p>
+     * @param events     The events being sent, all of the same type.
+     * @param candidates The mailboxes of the micro-services subscribed to the type of the events,
+     *                   never empty. The array must not be modified.
+     * @param targets    Filled with the index in {@code candidates} of the micro-service chosen
+     *                   for each of the events, in the order of {@code events}.
+     */
+    default void selectAll(List<? extends Event<?>> events, Mailbox[] candidates, int[] targets) {
+
+        for (int i = 0; i < targets.length; i++)
+            targets[i] = select(events.get(i), candidates);
+    }
+}
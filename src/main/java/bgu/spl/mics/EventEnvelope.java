@@ -0,0 +1,99 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The envelope in which the {@link MessageBus} delivers an {@link Event} to the
+ * mailbox of the micro-service chosen to handle it.
+ * The envelope carries the {@link Future} returned to the sender, so completing the
+ * event resolves it directly without any shared lookup table - once the envelope is
+ * handled, nothing in the message-bus references the event or its future anymore.
+ * <p>
+ * An envelope is handled at most once: whoever handles, steals or discards it claims it first,
+ * so an envelope stolen by a sibling service or shed by the message-bus while waiting in a
+ * mailbox is skipped by its consumer.
+ * <p>
+ * @param <T> The type of the result expected by the event.
+ */
+public final class EventEnvelope<T> implements Message {
+
+	// fields
+
+	private final Event<T> event;
+	private final Future<T> future;
+	private final EventSubscribers subscribers; // the subscribers of the event type - carry its dense ID and its statistics
+	private final long sentNanos; // the System.nanoTime() at which the event was sent
+	private volatile int claimed; // 1 once the envelope was claimed for handling, stealing or discarding
+	private static final AtomicIntegerFieldUpdater<EventEnvelope> CLAIMED = AtomicIntegerFieldUpdater.newUpdater(EventEnvelope.class, "claimed");
+
+	// constructor
+
+	EventEnvelope(Event<T> event, Future<T> future, EventSubscribers subscribers) {
+
+		this.event = event;
+		this.future = future;
+		this.subscribers = subscribers;
+		sentNanos = System.nanoTime();
+	}
+
+	// methods
+
+	/**
+	 * @return The delivered event
+	 */
+	public Event<T> getEvent() {
+
+		return event;
+	}
+
+	/**
+	 * @return The future object returned to the sender of the event
+	 */
+	public Future<T> getFuture() {
+
+		return future;
+	}
+
+	/**
+	 * @return The dense ID of the type of the delivered event, assigned by {@link MessageTypeIds}
+	 */
+	int getTypeId() {
+
+		return subscribers.getTypeId();
+	}
+
+	/**
+	 * @return The System.nanoTime() at which the event was sent
+	 */
+	long getSentNanos() {
+
+		return sentNanos;
+	}
+
+	/**
+	 * Completes the delivered event - resolves its future with {@code result} and records how long it took since it was sent
+	 * @param result The result of the event
+	 */
+	void complete(T result) {
+
+		future.resolve(result);
+		subscribers.recordCompletion(System.nanoTime() - sentNanos);
+	}
+
+	/**
+	 * Claims the envelope for handling, stealing or discarding
+	 * @return true if the caller claimed the envelope, false if it was claimed before
+	 */
+	boolean claim() {
+
+		return CLAIMED.compareAndSet(this, 0, 1);
+	}
+
+	/**
+	 * @return true if the envelope was claimed, false otherwise
+	 */
+	boolean isClaimed() {
+
+		return claimed == 1;
+	}
+}
@@ -0,0 +1,338 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The mailboxes of the micro-services subscribed to a single {@link Event} type, kept in a
+ * copy-on-write array together with the {@link DispatchStrategy} and the {@link OverflowPolicy} of the event type.
+ * Dispatching an event takes no lock and no lookup beyond the strategy itself;
+ * the rare subscribe and unregister operations pay for copying the array.
+ * <p>
+ * If work stealing is enabled for the event type, an idle subscriber may take events of
+ * the type from the tail of a busy subscriber's mailbox.
+ */
+class EventSubscribers {
+
+	// fields
+
+	private static final int STEAL_DEPTH_THRESHOLD = 2; // a mailbox is stolen from only if its consumer has at least one more message after the one it handles
+	private static final int STEAL_SCAN_LIMIT = 8; // how many messages at the tail of a mailbox are tried when stealing
+
+	private final Class<? extends Event> eventType;
+	private final int typeId; // the dense ID of the event type, carried by the envelopes of its events
+	private volatile Mailbox[] subscriberMailboxes; // replaced as a whole on every change, never modified in place
+	private volatile DispatchStrategy dispatchStrategy; // chooses the subscriber of each event
+	private volatile MessageLane lane; // the lane the events are delivered in
+	private volatile int capacity; // the amount of waiting messages above which a mailbox is full for events of this type
+	private volatile OverflowPolicy overflowPolicy; // what is done with an event sent to a full mailbox
+	private volatile long blockTimeoutNanos; // how long a sender waits for room under OverflowPolicy.BLOCK
+	private final OverflowCounters overflowCounters;
+	private volatile boolean stealingEnabled; // true if idle subscribers may steal events of this type from busy ones
+	private final LongAdder steals; // the amount of events of this type stolen so far
+	private final LongAdder sentEvents; // the amount of events of this type sent to a subscriber so far
+	private final LongAdder completedEvents; // the amount of events of this type completed so far
+	private final LongAdder completionNanos; // the total time from sending to completing the completed events
+
+	// constructor
+
+	EventSubscribers(Class<? extends Event> eventType) {
+
+		this.eventType = eventType;
+		typeId = MessageTypeIds.of(eventType);
+		subscriberMailboxes = new Mailbox[0];
+		dispatchStrategy = new RoundRobinDispatch();
+		lane = MessageLane.NORMAL;
+		capacity = Integer.MAX_VALUE;
+		overflowPolicy = OverflowPolicy.FAIL_FAST;
+		overflowCounters = new OverflowCounters();
+		steals = new LongAdder();
+		sentEvents = new LongAdder();
+		completedEvents = new LongAdder();
+		completionNanos = new LongAdder();
+	}
+
+	// methods
+
+	/**
+	 * @return The dense ID of the event type
+	 */
+	int getTypeId() {
+
+		return typeId;
+	}
+
+	/**
+	 * Replaces the dispatch strategy of the event type
+	 * @param dispatchStrategy The new strategy
+	 */
+	void setDispatchStrategy(DispatchStrategy dispatchStrategy) {
+
+		this.dispatchStrategy = dispatchStrategy;
+	}
+
+	/**
+	 * @return The lane the events are delivered in
+	 */
+	MessageLane getLane() {
+
+		return lane;
+	}
+
+	/**
+	 * @param lane The lane the events are delivered in
+	 */
+	void setLane(MessageLane lane) {
+
+		this.lane = lane;
+	}
+
+	/**
+	 * Sets the bound of the mailboxes for events of this type and what is done with events sent to a full mailbox
+	 * @param capacity          The amount of waiting messages above which a mailbox is full for events of this type
+	 * @param overflowPolicy    The policy applied to events sent to a full mailbox
+	 * @param blockTimeoutNanos How long a sender waits for room under {@link OverflowPolicy#BLOCK}
+	 */
+	void setOverflowPolicy(int capacity, OverflowPolicy overflowPolicy, long blockTimeoutNanos) {
+
+		this.overflowPolicy = overflowPolicy;
+		this.blockTimeoutNanos = blockTimeoutNanos;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * @param mailbox The mailbox chosen for an event of this type
+	 * @return The amount of waiting messages above which {@code mailbox} is full for events of this type
+	 */
+	int capacityOf(Mailbox mailbox) {
+
+		return Math.min(capacity, mailbox.getCapacity());
+	}
+
+	/**
+	 * @return The policy applied to events of this type sent to a full mailbox
+	 */
+	OverflowPolicy getOverflowPolicy() {
+
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return How long a sender waits for room under {@link OverflowPolicy#BLOCK}, in nanoseconds
+	 */
+	long getBlockTimeoutNanos() {
+
+		return blockTimeoutNanos;
+	}
+
+	/**
+	 * @return The counters of the overflows of events of this type
+	 */
+	OverflowCounters getOverflowCounters() {
+
+		return overflowCounters;
+	}
+
+	/**
+	 * @return true if idle subscribers may steal events of this type from busy ones
+	 */
+	boolean isStealingEnabled() {
+
+		return stealingEnabled;
+	}
+
+	/**
+	 * @param stealingEnabled true if idle subscribers may steal events of this type from busy ones
+	 */
+	void setStealingEnabled(boolean stealingEnabled) {
+
+		this.stealingEnabled = stealingEnabled;
+	}
+
+	/**
+	 * @return The amount of events of this type stolen so far
+	 */
+	long getStealCount() {
+
+		return steals.sum();
+	}
+
+	/**
+	 * Records the sending of events of this type to subscribers
+	 * @param events The amount of events sent
+	 */
+	void recordSent(int events) {
+
+		sentEvents.add(events);
+	}
+
+	/**
+	 * @return The amount of events of this type sent to a subscriber so far
+	 */
+	long getSentEvents() {
+
+		return sentEvents.sum();
+	}
+
+	/**
+	 * Records the completion of an event of this type
+	 * @param latencyNanos The time from sending the event to completing it
+	 */
+	void recordCompletion(long latencyNanos) {
+
+		completedEvents.increment();
+		completionNanos.add(latencyNanos);
+	}
+
+	/**
+	 * @return The amount of events of this type completed so far
+	 */
+	long getCompletedEvents() {
+
+		return completedEvents.sum();
+	}
+
+	/**
+	 * @return The total time from sending to completing the events of this type completed so far, in nanoseconds
+	 */
+	long getCompletionNanos() {
+
+		return completionNanos.sum();
+	}
+
+	/**
+	 * @return The amount of subscribers of this type
+	 */
+	int getSubscriberCount() {
+
+		return subscriberMailboxes.length;
+	}
+
+	/**
+	 * @return The total depth of the mailboxes of the subscribers - see {@link Mailbox#depth()}
+	 */
+	int getTotalDepth() {
+
+		int totalDepth = 0;
+
+		for (Mailbox subscriberMailbox : subscriberMailboxes)
+			totalDepth += subscriberMailbox.depth();
+
+		return totalDepth;
+	}
+
+	/**
+	 * Steals an event of this type from the tail of the mailbox of a busy subscriber - called by an idle subscriber's event loop.
+	 * The stolen envelope is claimed, so its original consumer skips it.
+	 * @param thiefMailbox The mailbox of the idle subscriber
+	 * @return The envelope of the stolen event, or null if there is nothing to steal
+	 */
+	EventEnvelope<?> steal(Mailbox thiefMailbox) {
+
+		for (Mailbox victimMailbox : subscriberMailboxes) {
+
+			if (victimMailbox == thiefMailbox || victimMailbox.depth() < STEAL_DEPTH_THRESHOLD)
+				continue;
+
+			int triedMessages = 0;
+
+			for (int index = victimMailbox.size() - 1; index >= 0 && triedMessages < STEAL_SCAN_LIMIT; index--) {
+
+				Message victimMessage = victimMailbox.peek(index);
+
+				if (victimMessage == null)
+					continue; // not visible to other threads - e.g. spilled out of the ring
+
+				triedMessages++;
+
+				if (victimMessage instanceof EventEnvelope) {
+
+					EventEnvelope<?> envelope = (EventEnvelope<?>) victimMessage;
+
+					// only events of this type - the thief may have no callback for the other messages of the victim
+					if (envelope.getEvent().getClass() == eventType && envelope.claim()) {
+						victimMailbox.abandon(); // its consumer skips the stolen envelope when it reaches it
+						steals.increment();
+						return envelope;
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Adds the mailbox {@code mailbox} to the subscribers if it is not subscribed yet
+	 * @param mailbox The mailbox of the subscribing micro-service
+	 */
+	synchronized void add(Mailbox mailbox) {
+
+		Mailbox[] current = subscriberMailboxes;
+
+		for (Mailbox subscriberMailbox : current)
+			if (subscriberMailbox == mailbox)
+				return;
+
+		Mailbox[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = mailbox;
+		subscriberMailboxes = updated;
+	}
+
+	/**
+	 * Removes the mailbox {@code mailbox} from the subscribers
+	 * @param mailbox The mailbox of the micro-service to remove
+	 */
+	synchronized void remove(Mailbox mailbox) {
+
+		Mailbox[] current = subscriberMailboxes;
+
+		for (int i = 0; i < current.length; i++)
+			if (current[i] == mailbox) {
+
+				Mailbox[] updated = new Mailbox[current.length - 1];
+				System.arraycopy(current, 0, updated, 0, i);
+				System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+				subscriberMailboxes = updated;
+				return;
+			}
+	}
+
+	/**
+	 * Chooses the subscriber that receives the event {@code e}
+	 * @param e The event being sent
+	 * @return The mailbox of the chosen subscriber, or null if there are no subscribers
+	 */
+	Mailbox select(Event<?> e) {
+
+		Mailbox[] current = subscriberMailboxes;
+
+		if (current.length == 0)
+			return null;
+
+		return current[dispatchStrategy.select(e, current)];
+	}
+
+	/**
+	 * Chooses the subscribers that receive a batch of events of this type
+	 * @param events The events being sent
+	 * @return The mailbox of the subscriber chosen for each of the events, or null if there are no subscribers
+	 */
+	Mailbox[] selectAll(List<? extends Event<?>> events) {
+
+		Mailbox[] current = subscriberMailboxes;
+
+		if (current.length == 0)
+			return null;
+
+		int[] targets = new int[events.size()];
+		dispatchStrategy.selectAll(events, current, targets);
+
+		Mailbox[] chosenMailboxes = new Mailbox[targets.length];
+		for (int i = 0; i < targets.length; i++)
+			chosenMailboxes[i] = current[targets[i]];
+
+		return chosenMailboxes;
+	}
+}
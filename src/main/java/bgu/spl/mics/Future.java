@@ -1,76 +1,250 @@
 package bgu.spl.mics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
 
 /**
  * A Future object represents a promised result - an object that will
  * eventually be resolved to hold a result of some operation. The class allows
  * Retrieving the result once it is available.
- * 
- * Only private methods may be added to this class.
+ *
+ * Besides {@link #get()}, {@link #resolve(Object)}, {@link #isDone()} and {@link #get(long, TimeUnit)}, the
+ * public API holds the composition methods {@link #onComplete(Callback)}, {@link #thenApply(Function)},
+ * {@link #thenCompose(Function)}, {@link #allOf(List)}, {@link #anyOf(List)}, {@link #flatten(Future)} and
+ * {@link #toCompletableFuture()}. Any other method added to this class must be private.
  * No public constructor is allowed except for the empty constructor.
  */
 
+@SuppressWarnings("unchecked") // suppress unchecked cast warnings of the state
+
 public class Future<T> {
 
-	// fields
+	// fields -- the whole state is a single reference changed by CAS, so no method takes a lock
 
-	private T result;
-	private boolean isDone;
+	private volatile Object state; // null while pending with no waiters, the top of the stack of waiters while pending, or a Resolution once resolved
+	private static final AtomicReferenceFieldUpdater<Future, Object> STATE = AtomicReferenceFieldUpdater.newUpdater(Future.class, Object.class, "state");
 
 	// constructor
-	
+
 	/**
 	 * This should be the the only public constructor in this class.
 	 */
 	public Future() {
 
-		isDone = false;
-		result = null;
+		state = null;
 	}
 
-	// methods -- all were added the synchronized keyword, as future objects have to act with thread-safety
-	
+	// methods
+
 	/**
      * retrieves the result the Future object holds if it has been resolved.
      * This is a blocking method! It waits for the computation in case it has
      * not been completed.
      * <p>
      * @return return the result of type T if it is available, if not wait until it is available.
-     * 	       
+     *
      */
-	public synchronized T get() {
+	public T get() {
+
+		Object currentState = state;
+
+		if (currentState instanceof Resolution)
+			return (T) ((Resolution) currentState).result; // the fast path - no waiting and no allocation
+
+		return awaitResolution(false, 0L);
+	}
+
+	/**
+     * Resolves the result of this Future object.
+     */
+	public void resolve (T result) {
+
+		Object previousState = STATE.getAndSet(this, new Resolution(result));
+
+		if (previousState instanceof Waiter)
+			releaseAll((Waiter) previousState, result); // wake the threads and call the callbacks that waited for the result
+	}
+
+	/**
+	 * Registers a callback that is called with the result of this Future object once it is resolved -
+	 * right away on the calling thread if it is resolved already, otherwise on the thread resolving it.
+	 * The callback must be short and non-blocking. A micro-service that wants the callback to run on its
+	 * own event loop registers it with {@link MicroService#whenResolved(Future, Callback)}.
+	 * <p>
+	 * @param callback	the callback to call with the result.
+	 */
+	public void onComplete(Callback<? super T> callback) {
+
+		if (!push(new Waiter(this, null, callback)))
+			callback.call((T) ((Resolution) state).result);
+	}
 
-		// wait for the result until it has been retrieved - a blocking block
-		while (!isDone()) {
+	/**
+	 * Creates a Future object resolved with the result of {@code function} applied to the result
+	 * of this Future object, once it is resolved. {@code function} is called as a callback of
+	 * {@link #onComplete(Callback)}. If {@code function} throws, the returned Future object is resolved with
+	 * null - as an event no one handled - so no one waits for it forever, and the exception is rethrown to
+	 * the thread resolving this Future object.
+	 * <p>
+	 * @param function	the function to apply to the result.
+	 * @return a Future object resolved with the result of the function, or with null if the function threw.
+	 */
+	public <R> Future<R> thenApply(Function<? super T, ? extends R> function) {
+
+		Future<R> appliedFuture = new Future<>();
+		onComplete(result -> {
+
+			R appliedResult = null;
+			try {
+				appliedResult = function.apply(result);
+			} finally {
+				appliedFuture.resolve(appliedResult); // null if the function threw
+			}
+		});
+		return appliedFuture;
+	}
+
+	/**
+	 * Creates a Future object resolved with the result of the Future object returned by {@code function}
+	 * applied to the result of this Future object - typically the future of the next event sent once this
+	 * one is resolved. {@code function} is called as a callback of {@link #onComplete(Callback)}. If
+	 * {@code function} throws, the returned Future object is resolved with null and the exception is rethrown,
+	 * as by {@link #thenApply(Function)}.
+	 * <p>
+	 * @param function	the function to apply to the result - returns null if no micro-service can handle the next event.
+	 * @return a Future object resolved with the result of the returned Future object, or with null if the function returned null or threw.
+	 */
+	public <R> Future<R> thenCompose(Function<? super T, ? extends Future<R>> function) {
+
+		Future<R> composedFuture = new Future<>();
+		onComplete(result -> {
+
+			Future<R> nextFuture = null;
 			try {
-				wait();
-			} catch (InterruptedException exception) {
-				exception.printStackTrace();
+				nextFuture = function.apply(result);
+			} finally {
+				if (nextFuture == null)
+					composedFuture.resolve(null); // no micro-service can handle the next event, or the function threw
+				else
+					nextFuture.onComplete(composedFuture::resolve);
 			}
+		});
+		return composedFuture;
+	}
+
+	/**
+	 * Creates a Future object resolved once all the Future objects {@code futures} are resolved - a fan-in of events
+	 * sent together. The results are awaited under a single deadline through {@link #get(long, TimeUnit)} of the
+	 * returned Future object, instead of a timeout for each of the futures one after another.
+	 * <p>
+	 * @param futures	the futures to combine - a null future, as returned for an event no micro-service can handle, counts as resolved with null.
+	 * @return a Future object resolved with the results of {@code futures}, in the same order.
+	 */
+	public static <T> Future<List<T>> allOf(List<? extends Future<? extends T>> futures) {
+
+		Future<List<T>> combinedFuture = new Future<>();
+		Object[] results = new Object[futures.size()];
+		AtomicInteger pendingFutures = new AtomicInteger(futures.size() + 1); // one more for the registration itself, so an empty list resolves as well
+
+		for (int i = 0; i < results.length; i++) {
+
+			Future<? extends T> currentFuture = futures.get(i);
+
+			if (currentFuture == null) {
+				pendingFutures.decrementAndGet();
+				continue;
+			}
+
+			int resultIndex = i;
+			currentFuture.onComplete(result -> {
+
+				results[resultIndex] = result;
+				if (pendingFutures.decrementAndGet() == 0) // the atomic decrement publishes the results to the last callback
+					combinedFuture.resolve(new ArrayList<>((List<T>) Arrays.asList(results)));
+			});
 		}
 
-		return result;
+		if (pendingFutures.decrementAndGet() == 0)
+			combinedFuture.resolve(new ArrayList<>((List<T>) Arrays.asList(results)));
+
+		return combinedFuture;
 	}
-	
+
 	/**
-     * Resolves the result of this Future object.
-     */
-	public synchronized void resolve (T result) {
+	 * Creates a Future object resolved with the result of the first of the Future objects {@code futures} to be resolved.
+	 * The result is awaited under a single deadline through {@link #get(long, TimeUnit)} of the returned Future object.
+	 * <p>
+	 * @param futures	the futures to combine - null futures are never resolved, and are skipped.
+	 * @return a Future object resolved with the first result, or with null if there is no future to wait for.
+	 */
+	public static <T> Future<T> anyOf(List<? extends Future<? extends T>> futures) {
+
+		Future<T> firstFuture = new Future<>();
+		boolean anyFuture = false;
+
+		for (Future<? extends T> currentFuture : futures)
+			if (currentFuture != null) {
+				anyFuture = true;
+				currentFuture.onComplete(firstFuture::tryResolve); // the later results are ignored
+			}
+
+		if (!anyFuture)
+			firstFuture.resolve(null);
+
+		return firstFuture;
+	}
+
+	/**
+	 * Creates a Future object resolved with the result of the Future object {@code nestedFuture} is resolved with -
+	 * such as the future of a resource that is not available yet. Both are awaited under a single deadline through
+	 * {@link #get(long, TimeUnit)} of the returned Future object, instead of a timed wait for each.
+	 * <p>
+	 * @param nestedFuture	the future of a future.
+	 * @return a Future object resolved with the inner result, or with null if {@code nestedFuture} is resolved with null.
+	 */
+	public static <T> Future<T> flatten(Future<? extends Future<? extends T>> nestedFuture) {
+
+		Future<T> flatFuture = new Future<>();
+		nestedFuture.onComplete(innerFuture -> {
 
-		this.result = result;
-		isDone = true;
-		notifyAll();
+			if (innerFuture == null)
+				flatFuture.resolve(null);
+			else
+				innerFuture.onComplete(flatFuture::resolve);
+		});
+		return flatFuture;
 	}
-	
+
+	/**
+	 * Bridges this Future object to a {@link CompletableFuture} completed with its result once it is resolved.
+	 * The bridge is a single callback - no thread waits for the result.
+	 * <p>
+	 * @return a CompletableFuture completed with the result of this Future object.
+	 */
+	public CompletableFuture<T> toCompletableFuture() {
+
+		CompletableFuture<T> completableFuture = new CompletableFuture<>();
+		onComplete(completableFuture::complete);
+		return completableFuture;
+	}
+
 	/**
      * @return true if this object has been resolved, false otherwise
      */
-	public synchronized boolean isDone() {
+	public boolean isDone() {
 
-		return isDone;
+		return state instanceof Resolution;
 	}
-	
+
 	/**
      * retrieves the result the Future object holds if it has been resolved,
      * This method is non-blocking, it has a limited amount of time determined
@@ -78,21 +252,232 @@ public class Future<T> {
      * <p>
      * @param timeout 	the maximal amount of time units to wait for the result.
      * @param unit		the {@link TimeUnit} time units to wait.
-     * @return return the result of type T if it is available, if not, 
+     * @return return the result of type T if it is available, if not,
      * 	       wait for {@code timeout} TimeUnits {@code unit}. If time has
-     *         elapsed, return null.
+     *         elapsed, or the waiting thread was interrupted, return null.
      */
-	public synchronized T get(long timeout, TimeUnit unit) {
+	public T get(long timeout, TimeUnit unit) {
 
-		if (!isDone) {
-			try {
-				wait(unit.toMillis(timeout));
-			} catch (InterruptedException exception) {
-				exception.printStackTrace();
+		Object currentState = state;
+
+		if (currentState instanceof Resolution)
+			return (T) ((Resolution) currentState).result; // the fast path - no waiting and no allocation
+
+		if (timeout <= 0)
+			return null;
+
+		return awaitResolution(true, System.nanoTime() + unit.toNanos(timeout));
+	}
+
+	/**
+	 * Resolves the future with {@code result} unless it is resolved already
+	 * @param result The result of the future
+	 */
+	private void tryResolve(T result) {
+
+		Object currentState;
+
+		do {
+			currentState = state;
+
+			if (currentState instanceof Resolution)
+				return;
+		} while (!STATE.compareAndSet(this, currentState, new Resolution(result)));
+
+		if (currentState != null)
+			releaseAll((Waiter) currentState, result);
+	}
+
+	/**
+	 * Parks the calling thread until the future is resolved, or until the deadline if the wait is timed.
+	 * Spurious wakeups do not end the wait early. An interrupt ends a timed wait, and the interrupt status
+	 * of the thread is kept for the caller in any case.
+	 * @param timed    true if the wait ends at {@code deadline}
+	 * @param deadline The {@link System#nanoTime()} at which a timed wait ends
+	 * @return The result, or null if the future was not resolved
+	 */
+	private T awaitResolution(boolean timed, long deadline) {
+
+		Waiter waiter = new Waiter(this, Thread.currentThread(), null);
+		waiter.timed = timed;
+		waiter.deadline = deadline;
+
+		try {
+			if (push(waiter)) {
+				if (Thread.currentThread() instanceof ForkJoinWorkerThread)
+					ForkJoinPool.managedBlock(waiter); // lets a pool - such as the ones of the ActorScheduler - run another thread in place of this one meanwhile
+				else
+					while (!waiter.isReleasable())
+						waiter.block();
+			}
+		} catch (InterruptedException exception) {
+			waiter.interrupted = true; // never thrown by the waiter itself
+		} finally {
+			waiter.thread = null; // the resolving thread has no need to unpark this thread anymore
+			if (waiter.interrupted)
+				Thread.currentThread().interrupt();
+		}
+
+		Object currentState = state;
+
+		if (currentState instanceof Resolution)
+			return (T) ((Resolution) currentState).result;
+
+		removeCancelledWaiters(); // the wait timed out or was interrupted - repeated polling must not pile up waiters
+		return null;
+	}
+
+	/**
+	 * Unlinks the waiters of threads that stopped waiting from the stack of a pending future.
+	 * Only cancelled waiters are ever unlinked, so a concurrent resolution still reaches all the others.
+	 */
+	private void removeCancelledWaiters() {
+
+		retry:
+		while (true) {
+
+			Object currentState = state;
+
+			if (!(currentState instanceof Waiter))
+				return; // resolved - the waiters are released and dropped anyway
+
+			Waiter previousWaiter = null;
+
+			for (Waiter waiter = (Waiter) currentState, nextWaiter; waiter != null; waiter = nextWaiter) {
+
+				nextWaiter = waiter.next;
+
+				if (!waiter.isCancelled())
+					previousWaiter = waiter;
+				else if (previousWaiter != null) {
+					previousWaiter.next = nextWaiter;
+					if (previousWaiter.isCancelled())
+						continue retry; // the previous waiter was cancelled meanwhile and may be unlinked itself
+				}
+				else if (!STATE.compareAndSet(this, waiter, nextWaiter))
+					continue retry; // a waiter was pushed, or the future was resolved
+			}
+
+			return;
+		}
+	}
+
+	/**
+	 * Pushes {@code waiter} on top of the stack of waiters, unless the future is resolved already
+	 * @param waiter The waiter to push
+	 * @return true if the waiter was pushed, false if the future is resolved
+	 */
+	private boolean push(Waiter waiter) {
+
+		Object currentState;
+
+		do {
+			currentState = state;
+
+			if (currentState instanceof Resolution)
+				return false;
+
+			waiter.next = (Waiter) currentState;
+		} while (!STATE.compareAndSet(this, currentState, waiter));
+
+		return true;
+	}
+
+	/**
+	 * Releases all the waiters pushed before the future was resolved, in the order they were pushed. A callback that
+	 * throws is reported to the uncaught exception handler of the resolving thread, and the later waiters are released still.
+	 * @param topWaiter The top of the stack of waiters, taken off the future by resolving it
+	 * @param result    The result of the future
+	 */
+	private void releaseAll(Waiter topWaiter, T result) {
+
+		// copy the stack rather than reversing it in place - a thread that stopped waiting may still be unlinking its waiter
+		List<Waiter> waiters = new ArrayList<>();
+		for (Waiter waiter = topWaiter; waiter != null; waiter = waiter.next)
+			waiters.add(waiter);
+
+		// release the waiters first come first served
+		for (int i = waiters.size() - 1; i >= 0; i--) {
+
+			Waiter waiter = waiters.get(i);
+
+			if (waiter.callback != null) {
+				try {
+					((Callback<? super T>) waiter.callback).call(result);
+				} catch (RuntimeException exception) {
+					Thread resolvingThread = Thread.currentThread();
+					resolvingThread.getUncaughtExceptionHandler().uncaughtException(resolvingThread, exception);
+				}
+			}
+			else {
+				Thread waitingThread = waiter.thread;
+				if (waitingThread != null)
+					LockSupport.unpark(waitingThread);
 			}
 		}
+	}
+
+	/**
+	 * The resolved state of a future - the result may be null, so a resolved future never holds it directly
+	 */
+	private static final class Resolution {
 
-		return result;
+		private final Object result;
+
+		private Resolution(Object result) {
+
+			this.result = result;
+		}
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A node in the stack of the waiters of a pending future - either a parked thread or a callback
+	 */
+	private static final class Waiter implements ForkJoinPool.ManagedBlocker {
+
+		private final Future<?> future; // the future waited for
+		private volatile Thread thread; // the parked thread, null for a callback or once the thread stopped waiting
+		private final Callback<?> callback; // null for a parked thread
+		private volatile Waiter next; // unlinked by any thread whose wait ended unresolved
+		private boolean timed, interrupted;
+		private long deadline;
+
+		private Waiter(Future<?> future, Thread thread, Callback<?> callback) {
+
+			this.future = future;
+			this.thread = thread;
+			this.callback = callback;
+		}
+
+		/**
+		 * @return true if this is the waiter of a thread that stopped waiting, false otherwise
+		 */
+		private boolean isCancelled() {
+
+			return callback == null && thread == null;
+		}
+
+		@Override
+		public boolean isReleasable() {
+
+			return future.state instanceof Resolution || (timed && (interrupted || deadline - System.nanoTime() <= 0));
+		}
+
+		@Override
+		public boolean block() {
+
+			if (isReleasable())
+				return true;
+
+			if (timed)
+				LockSupport.parkNanos(this, deadline - System.nanoTime());
+			else
+				LockSupport.park(this);
+
+			if (Thread.interrupted())
+				interrupted = true; // cleared meanwhile, so an untimed wait does not spin - restored once the wait ends
+
+			return isReleasable();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds, with a bucket for every power of two - bucket {@code b} counts the
+ * durations in [2^(b-1), 2^b), and bucket 0 counts the zero durations. Recording takes no lock and allocates
+ * nothing, so a micro-service can record every message it handles.
+ * <p>
+ * There is a single writer - the event loop of the micro-service that owns the histogram - so recording uses
+ * ordered writes instead of atomic increments; any thread may read the histogram at any time.
+ */
+final class LatencyHistogram {
+
+	// fields
+
+	static final int BUCKETS = 64;
+
+	private final AtomicLongArray buckets;
+	private final AtomicLongArray totals; // the amount of recorded durations at index 0 and their sum at index 1
+
+	// constructor
+
+	LatencyHistogram() {
+
+		buckets = new AtomicLongArray(BUCKETS);
+		totals = new AtomicLongArray(2);
+	}
+
+	// methods
+
+	/**
+	 * Records a duration - may be called only by the single writer of the histogram
+	 * @param nanos The duration, negative durations count as zero
+	 */
+	void record(long nanos) {
+
+		if (nanos < 0)
+			nanos = 0;
+
+		int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+
+		buckets.lazySet(bucket, buckets.get(bucket) + 1);
+		totals.lazySet(1, totals.get(1) + nanos);
+		totals.lazySet(0, totals.get(0) + 1);
+	}
+
+	/**
+	 * @return The amount of recorded durations
+	 */
+	long getCount() {
+
+		return totals.get(0);
+	}
+
+	/**
+	 * @return The mean of the recorded durations in nanoseconds, or 0 if none was recorded
+	 */
+	long getMeanNanos() {
+
+		long count = totals.get(0);
+
+		return count == 0 ? 0 : totals.get(1) / count;
+	}
+
+	/**
+	 * @param percentile The percentile, between 0 and 100
+	 * @return The upper bound of the bucket holding the percentile of the recorded durations, in nanoseconds,
+	 *         or 0 if none was recorded
+	 */
+	long getPercentileNanos(double percentile) {
+
+		long[] counts = getBuckets();
+		long count = 0;
+
+		for (long bucketCount : counts)
+			count += bucketCount;
+
+		long rank = (long) Math.ceil(count * percentile / 100), seen = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++) {
+
+			seen += counts[bucket];
+			if (seen >= rank && seen > 0)
+				return bucket == 0 ? 0 : 1L << Math.min(bucket, 62);
+		}
+
+		return 0;
+	}
+
+	/**
+	 * @return A copy of the counts of the buckets
+	 */
+	long[] getBuckets() {
+
+		long[] counts = new long[BUCKETS];
+
+		for (int bucket = 0; bucket < BUCKETS; bucket++)
+			counts[bucket] = buckets.get(bucket);
+
+		return counts;
+	}
+}
@@ -0,0 +1,31 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Dispatches each event to the subscriber with the shallowest mailbox, as measured by
+ * {@link Mailbox#depth()}. The scan starts at a random subscriber, so ties are broken randomly.
+ * Reads the depth of every subscriber on each event - suitable for event types with few subscribers.
+ */
+public class LeastQueueDepthDispatch implements DispatchStrategy {
+
+	@Override
+	public int select(Event<?> event, Mailbox[] candidates) {
+
+		int start = ThreadLocalRandom.current().nextInt(candidates.length);
+		int chosen = start, chosenDepth = candidates[start].depth();
+
+		for (int i = 1; i < candidates.length && chosenDepth > 0; i++) {
+
+			int current = (start + i) % candidates.length;
+			int currentDepth = candidates[current].depth();
+
+			if (currentDepth < chosenDepth) {
+				chosen = current;
+				chosenDepth = currentDepth;
+			}
+		}
+
+		return chosen;
+	}
+}
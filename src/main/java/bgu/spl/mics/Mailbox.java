@@ -0,0 +1,189 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * A mailbox is the message-queue the {@link MessageBus} allocates to every
+ * registered {@link MicroService}.
+ * Any number of threads may add messages to a mailbox, but only a single
+ * thread - the one running the owning micro-service's event loop - may take
+ * messages out of it.
+ */
+public interface Mailbox {
+
+    /**
+     * Adds the message {@code message} to the end of this mailbox and wakes
+     * the consumer if it is waiting for a message. This method is non-blocking.
+     * <p>
+     * @param message The message to add.
+     */
+    void put(Message message);
+
+    /**
+     * Adds all the messages in {@code messages} to the end of this mailbox, in
+     * their iteration order, and wakes the consumer once if it is waiting for a
+     * message. This method is non-blocking.
+     * <p>
+     * @param messages The messages to add.
+     */
+    void putAll(Collection<? extends Message> messages);
+
+    /**
+     * Adds the message {@code message} to the end of the control lane of this
+     * mailbox and wakes the consumer if it is waiting for a message. Messages in
+     * the control lane are taken before all the messages added by {@link #put(Message)}.
+     * This method is non-blocking.
+     * <p>
+     * @param message The message to add.
+     */
+    void putControl(Message message);
+
+    /**
+     * Retrieves and removes the head of this mailbox - the head of the control
+     * lane if it is not empty - waiting if necessary until a message becomes available.
+     * May only be called by the consumer of this mailbox.
+     * <p>
+     * @return The head of this mailbox.
+     * @throws InterruptedException if interrupted while waiting for a message.
+     */
+    Message take() throws InterruptedException;
+
+    /**
+     * Retrieves and removes the head of this mailbox - the head of the control
+     * lane if it is not empty.
+     * May only be called by the consumer of this mailbox.
+     * <p>
+     * @return The head of this mailbox, or null if it is empty.
+     */
+    Message poll();
+
+    /**
+     * Retrieves and removes up to {@code maxMessages} messages of this mailbox - in the
+     * order {@link #poll()} would retrieve them - and adds them to {@code target}.
+     * Lets the consumer take a burst of messages at once instead of one by one.
+     * May only be called by the consumer of this mailbox.
+     * <p>
+     * @param target      The collection to add the messages to.
+     * @param maxMessages The maximal number of messages to retrieve.
+     * @return The number of messages added to {@code target}.
+     */
+    int drainTo(Collection<? super Message> target, int maxMessages);
+
+    /**
+     * Parks the consumer until a message is put into this mailbox or {@link #signal()}
+     * is called. Returns immediately if either happened since the last call.
+     * This method may return spuriously, so the consumer has to check again for
+     * messages when it returns.
+     * May only be called by the consumer of this mailbox.
+     * <p>
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void await() throws InterruptedException;
+
+    /**
+     * Like {@link #await()}, but parks the consumer for at most {@code timeoutNanos}
+     * nanoseconds.
+     * May only be called by the consumer of this mailbox.
+     * <p>
+     * @param timeoutNanos The longest time to wait, in nanoseconds.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    void awaitNanos(long timeoutNanos) throws InterruptedException;
+
+    /**
+     * Sets a listener run whenever the consumer would be woken - on every put and
+     * {@link #signal()} - whether or not it is parked. Used for scheduling consumers
+     * that do not wait on their mailbox, such as the ones run by an {@link ActorScheduler}.
+     * <p>
+     * @param signalListener The listener, or null for none - must be fast and non-blocking.
+     */
+    void setSignalListener(Runnable signalListener);
+
+    /**
+     * Wakes the consumer if it is parked in {@link #await()}. Used to notify the
+     * consumer about messages which are not kept in the mailbox itself.
+     */
+    void signal();
+
+    /**
+     * @return The number of messages currently waiting in this mailbox, not counting the
+     *         abandoned ones the consumer did not skip yet.
+     */
+    int size();
+
+    /**
+     * @return The number of messages put into this mailbox so far.
+     */
+    long getReceivedCount();
+
+    /**
+     * @return The number of messages waiting in this mailbox, plus one if the consumer
+     *         is still handling the last message it took. Used by the load-aware
+     *         {@link DispatchStrategy}s.
+     */
+    int depth();
+
+    /**
+     * @return true if there are no messages waiting in this mailbox, false otherwise.
+     */
+    boolean isEmpty();
+
+    /**
+     * Returns, without removing it, the message at position {@code index} of the
+     * lane filled by {@link #put(Message)}, counted from its head. May be called by
+     * any thread, so the result may already be stale when it returns.
+     * <p>
+     * @param index The position of the message, 0 for the head.
+     * @return The message at the position, or null if there is none or it is not
+     *         visible to threads other than the consumer.
+     */
+    Message peek(int index);
+
+    /**
+     * Returns an iterator over the messages of the lane filled by {@link #put(Message)}, from
+     * its head - the abandoned ones included. May be used by any thread; the iterator is weakly
+     * consistent and may miss messages put or taken while it is used.
+     * <p>
+     * @return An iterator over the waiting messages, which does not support removal.
+     */
+    Iterator<Message> iterator();
+
+    /**
+     * Records that a message waiting in this mailbox was claimed by another thread - shed or
+     * stolen - so it no longer counts in {@link #size()}, although the consumer still has to
+     * take it and skip it. The consumer calls {@link #removeAbandoned()} once it did.
+     */
+    void abandon();
+
+    /**
+     * Records that the consumer took a message abandoned by {@link #abandon()} and skipped it.
+     * May be called before the matching {@link #abandon()}, if the consumer took the message while
+     * it was being claimed.
+     */
+    void removeAbandoned();
+
+    /**
+     * @return The maximal number of messages this mailbox accepts before the
+     *         {@link OverflowPolicy} of the sent event applies, or {@link Integer#MAX_VALUE}
+     *         if it is unbounded. Messages in the control lane are never refused.
+     */
+    int getCapacity();
+
+    /**
+     * @return The counters of the overflows of this mailbox.
+     */
+    OverflowCounters getOverflowCounters();
+
+    /**
+     * Marks this mailbox as closed - its micro-service is leaving and takes no more
+     * messages. Messages can still be put, so whoever puts a message into a closed
+     * mailbox is responsible for disposing of it.
+     */
+    void close();
+
+    /**
+     * @return true if {@link #close()} was called, false otherwise.
+     */
+    boolean isClosed();
+}
@@ -1,5 +1,7 @@
 package bgu.spl.mics;
 
+import java.util.List;
+
 /**
  * The message-bus is a shared object used for communication between
  * micro-services.
@@ -35,9 +37,14 @@ public interface MessageBus {
      * When this method is called, the message-bus will resolve the {@link Future}
      * object associated with {@link Event} {@code e}.
      * <p>
+     * Must be called from the event loop of the micro-service that received {@code e},
+     * while {@code e} is still uncompleted.
+     * <p>
      * @param <T>    The type of the result expected by the completed event.
      * @param e      The completed event.
      * @param result The resolved result of the completed event.
+     * @throws IllegalStateException if no micro-service runs its event loop on the calling thread, or if
+     *                               the micro-service that does has no uncompleted event {@code e}.
      */
     <T> void complete(Event<T> e, T result);
 
@@ -61,6 +68,20 @@ public interface MessageBus {
      */
     <T> Future<T> sendEvent(Event<T> e);
 
+    /**
+     * Adds each of the {@link Event}s in {@code events} to the message queue of one
+     * of the micro-services subscribed to its type, exactly as {@link #sendEvent(Event)}
+     * would, but resolves the subscribers of each event type only once and adds all
+     * the events assigned to the same micro-service in a single operation.
+     * This method should be non-blocking.
+     * <p>
+     * @param <T>    	The type of the result expected by the events and their corresponding future objects.
+     * @param events 	The events to add to the queues.
+     * @return a list of {@link Future<T>} objects in the order of {@code events} - each of them
+     * 	       is null in case no micro-service has subscribed to the type of its event.
+     */
+    <T> List<Future<T>> sendEvents(List<? extends Event<T>> events);
+
     /**
      * Allocates a message-queue for the {@link MicroService} {@code m}.
      * <p>
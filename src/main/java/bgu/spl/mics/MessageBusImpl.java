@@ -1,25 +1,52 @@
 package bgu.spl.mics;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
 
 /**
- * The {@link MessageBusImpl class is the implementation of the MessageBus interface.
- * Write your implementation here!
- * Only private fields and methods can be added to this class.
+ * The {@link MessageBusImpl} class is the implementation of the MessageBus interface.
+ * <p>
+ * Besides the methods of {@link MessageBus}, the public API of the class is its configuration - the mailbox
+ * factory, the batch sizes, and the dispatch strategy, lane, overflow policy and work stealing of each message
+ * type, all meant to be set at startup before the configured types are used - and the counters read through
+ * its getters and its management bean. The package-private methods are hooks for the rest of the framework,
+ * such as {@link MicroService}, {@link ActorScheduler} and {@link VirtualClock}, and are not meant for the
+ * micro-services themselves. Any other member added to this class is private.
  */
 
 @SuppressWarnings("unchecked") // suppress unchecked assignment warnings
 
 public class MessageBusImpl implements MessageBus {
 
-	// fields - 4 final distinct hashmaps that are efficient in arranging the required data and cannot be reassigned after the first time
+	// fields - 3 final distinct hashmaps that are efficient in arranging the required data and cannot be reassigned after the first time
 
-	private final ConcurrentHashMap <MicroService, LinkedBlockingQueue<Message>> microServicesMessagesQueues; // a hash map of all microservices and a queue of their messages - both events and broadcasts
-	private final ConcurrentHashMap <Class<? extends Event>, LinkedBlockingQueue<MicroService>> eventSubscribeList; // a hash map of an event type and the microservices able to process it
-	private final ConcurrentHashMap <Class<? extends Broadcast>, LinkedBlockingQueue<MicroService>> broadcastSubscribeList; //  a hash map of a broadcast type and the microservices that want to receive it
-	private final ConcurrentHashMap <Event, Future> futureHashMap; // a hash map of a message and its future objects
+	private final ConcurrentHashMap <MicroService, ServiceRegistration> microServicesRegistrations; // a hash map of all microservices and their mailboxes and broadcast cursors
+	private final ConcurrentHashMap <Class<? extends Event>, EventSubscribers> eventSubscribeList; // a hash map of an event type and the mailboxes of the microservices able to process it
+	private final ConcurrentHashMap <Class<? extends Broadcast>, BroadcastLog> broadcastLogs; // a hash map of a broadcast type and the single log read by all of its subscribers
+	private final ThreadLocal<MicroService> handlingMicroService; // the microservice whose event loop runs on the current thread
+	private volatile Function<? super MicroService, ? extends Mailbox> mailboxFactory; // creates the mailbox of each registered microservice
+	private volatile ToIntFunction<? super MicroService> batchSizes; // the amount of messages each registered microservice takes at once
+
+	public static final int DEFAULT_BATCH_SIZE = 16; // the default amount of messages a microservice takes from the message-bus at once
+
+	private static final long MIN_BLOCK_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(10); // the first pause of a sender waiting for room in a full mailbox
+	private static final long MAX_BLOCK_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // the longest pause of a sender waiting for room in a full mailbox
+	private static final int SHED_SCAN_LIMIT = 8; // how many of the oldest messages of a full mailbox are tried when shedding one
+	private static final long STEAL_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // how often an idle microservice that may steal looks for work
 
 	// thread-safe singleton implementation
 	private static class MessageBusImplSingletonHolder {
@@ -31,10 +58,13 @@ public class MessageBusImpl implements MessageBus {
 
 	private MessageBusImpl() {
 
-		microServicesMessagesQueues = new ConcurrentHashMap<>();
+		microServicesRegistrations = new ConcurrentHashMap<>();
 		eventSubscribeList = new ConcurrentHashMap<>();
-		broadcastSubscribeList = new ConcurrentHashMap<>();
-		futureHashMap = new ConcurrentHashMap<>();
+		broadcastLogs = new ConcurrentHashMap<>();
+		handlingMicroService = new ThreadLocal<>();
+		mailboxFactory = microService -> new RingBufferMailbox();
+		batchSizes = microService -> DEFAULT_BATCH_SIZE;
+		registerMBean(new Monitor(), MessageBusMXBean.class, "bgu.spl.mics:type=MessageBus");
 	}
 
 	// methods
@@ -47,6 +77,125 @@ public class MessageBusImpl implements MessageBus {
 		return MessageBusImplSingletonHolder.messageBusInstance;
 	}
 
+	/**
+	 * Sets the factory of the mailboxes allocated to micro-services registered from now on.
+	 * By default every micro-service gets an unbounded lock-free {@link RingBufferMailbox}.
+	 * @param mailboxFactory Creates a new, empty {@link Mailbox} for the registering micro-service on each call
+	 */
+	public void setMailboxFactory(Function<? super MicroService, ? extends Mailbox> mailboxFactory) {
+
+		this.mailboxFactory = Objects.requireNonNull(mailboxFactory);
+	}
+
+	/**
+	 * Sets the amount of messages taken at once by each micro-service registered from now on - its event loop
+	 * takes up to that many waiting messages on every wakeup and runs their callbacks in order, instead of
+	 * taking them one by one. Messages taken in a batch are no longer seen by {@link Mailbox#depth()} or
+	 * by stealing siblings, so services that have to share their load finely may need a small batch size.
+	 * By default micro-services take up to {@link #DEFAULT_BATCH_SIZE} messages at once.
+	 * @param batchSizes Returns the positive batch size of the registering micro-service
+	 */
+	public void setBatchSizes(ToIntFunction<? super MicroService> batchSizes) {
+
+		this.batchSizes = Objects.requireNonNull(batchSizes);
+	}
+
+	/**
+	 * Sets the strategy that decides which of the micro-services subscribed to the event type
+	 * {@code type} receives each event of this type. By default events are dispatched by a
+	 * {@link RoundRobinDispatch}. Meant to be called at startup, before events of the type are sent.
+	 * @param type             The event type
+	 * @param dispatchStrategy The strategy of the event type - used only for this type
+	 */
+	public void setDispatchStrategy(Class<? extends Event> type, DispatchStrategy dispatchStrategy) {
+
+		eventSubscribeList.computeIfAbsent(type, EventSubscribers::new).setDispatchStrategy(Objects.requireNonNull(dispatchStrategy));
+	}
+
+	/**
+	 * Sets the lane the messages of type {@code type} travel in. Messages in the {@link MessageLane#CONTROL}
+	 * lane are always taken by a micro-service before the messages in the {@link MessageLane#NORMAL} lane.
+	 * By default broadcasts travel in the control lane and events in the normal lane.
+	 * Meant to be called at startup, before messages of the type are sent.
+	 * @param type The event or broadcast type
+	 * @param lane The lane of the type
+	 */
+	public void setMessageLane(Class<? extends Message> type, MessageLane lane) {
+
+		Objects.requireNonNull(lane);
+
+		if (Event.class.isAssignableFrom(type))
+			eventSubscribeList.computeIfAbsent(type.asSubclass(Event.class), EventSubscribers::new).setLane(lane);
+		else if (Broadcast.class.isAssignableFrom(type))
+			broadcastLogs.computeIfAbsent(type.asSubclass(Broadcast.class), broadcastType -> new BroadcastLog()).setLane(lane);
+		else
+			throw new IllegalArgumentException(type.getName() + " is neither an event nor a broadcast");
+	}
+
+	/**
+	 * Bounds the mailboxes for events of type {@code type} and sets what is done with events of this type sent
+	 * to a full mailbox - a mailbox is full once the amount of messages waiting in it reaches the smaller of
+	 * {@code capacity} and its own {@link Mailbox#getCapacity()}. By default events are bounded only by the
+	 * capacity of the mailboxes and rejected with {@link OverflowPolicy#FAIL_FAST}. Events in the control lane
+	 * are never refused. Meant to be called at startup, before events of the type are sent.
+	 * @param type         The event type
+	 * @param capacity     The bound of the mailboxes for events of the type, {@link Integer#MAX_VALUE} for none
+	 * @param policy       The policy applied to events of the type sent to a full mailbox
+	 * @param blockTimeout How long a sender waits for room under {@link OverflowPolicy#BLOCK}
+	 * @param unit         The time unit of {@code blockTimeout}
+	 */
+	public void setOverflowPolicy(Class<? extends Event> type, int capacity, OverflowPolicy policy, long blockTimeout, TimeUnit unit) {
+
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity of an event type must be positive");
+
+		eventSubscribeList.computeIfAbsent(type, EventSubscribers::new).setOverflowPolicy(capacity, Objects.requireNonNull(policy), unit.toNanos(blockTimeout));
+	}
+
+	/**
+	 * Lets idle micro-services subscribed to the event type {@code type} steal events of this type from the tail of
+	 * the mailboxes of busy micro-services subscribed to it. An idle micro-service steals only after it read all of
+	 * its broadcasts, so a stolen event is never handled before a broadcast sent to the thief ahead of it.
+	 * Off by default, as stolen events are not handled in the order they were sent.
+	 * @param type    The event type
+	 * @param enabled true to allow stealing events of the type
+	 */
+	public void setWorkStealing(Class<? extends Event> type, boolean enabled) {
+
+		eventSubscribeList.computeIfAbsent(type, EventSubscribers::new).setStealingEnabled(enabled);
+	}
+
+	/**
+	 * @param type The event type
+	 * @return The amount of events of type {@code type} stolen by idle micro-services so far
+	 */
+	public long getStealCount(Class<? extends Event> type) {
+
+		EventSubscribers capableServices = eventSubscribeList.get(type);
+
+		return capableServices == null ? 0 : capableServices.getStealCount();
+	}
+
+	/**
+	 * @param type The event type
+	 * @return The counters of the overflows of events of type {@code type}
+	 */
+	public OverflowCounters getOverflowCounters(Class<? extends Event> type) {
+
+		return eventSubscribeList.computeIfAbsent(type, EventSubscribers::new).getOverflowCounters();
+	}
+
+	/**
+	 * @param m The micro-service
+	 * @return The counters of the overflows of the mailbox of {@code m}, or null if {@code m} is not registered
+	 */
+	public OverflowCounters getOverflowCounters(MicroService m) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		return registration == null ? null : registration.getMailbox().getOverflowCounters();
+	}
+
 	@Override
 	public <T> void subscribeEvent(Class<? extends Event<T>> type, MicroService m) {
 
@@ -54,8 +203,8 @@ public class MessageBusImpl implements MessageBus {
 		if (isNotRegistered(m))
 			register(m);
 
-		eventSubscribeList.putIfAbsent(type, new LinkedBlockingQueue<>()); // add the event if the events list doesn't contain it
-		eventSubscribeList.get(type).add(m); // add the microservice m to the list of capable services
+		// add the microservice m to the list of capable services, and remember the subscription for unregistering m
+		microServicesRegistrations.get(m).subscribe(eventSubscribeList.computeIfAbsent(type, EventSubscribers::new));
 
 	}
 
@@ -66,76 +215,457 @@ public class MessageBusImpl implements MessageBus {
 		if (isNotRegistered(m))
 			register(m);
 
-		broadcastSubscribeList.putIfAbsent(type, new LinkedBlockingQueue<>()); // add the broadcast if the broadcasts list doesn't contain it
-		broadcastSubscribeList.get(type).add(m); // add the microservice m to the list of capable services
+		BroadcastLog broadcastLog = broadcastLogs.computeIfAbsent(type, broadcastType -> new BroadcastLog()); // add the broadcast if the broadcasts list doesn't contain it
+		microServicesRegistrations.get(m).subscribe(broadcastLog); // give the microservice m a cursor into the log of the broadcast type
 
 	}
 
 
+	/**
+	 * {@inheritDoc}
+	 * The future object is carried by the {@link EventEnvelope} the event was delivered in, so
+	 * this method has to be called from the event loop of the micro-service that received {@code e}.
+	 */
 	@Override
 	public <T> void complete(Event<T> e, T result) {
 
-		futureHashMap.get(e).resolve(result); // resolve the future object of the event e with the given result
+		MicroService handlingService = handlingMicroService.get();
+
+		if (handlingService == null)
+			throw new IllegalStateException("An event can be completed only from the event loop of the MicroService that received it");
+
+		handlingService.completeEvent(e, result); // resolve the future object of the event e with the given result
 	}
 
 	@Override
 	public void sendBroadcast(Broadcast b) {
 
-		// add the broadcast message b to the queues of all the Micro-Services which subscribed to receive this specific message type
-		for (MicroService currentMicroService : broadcastSubscribeList.get(b.getClass()))
-				microServicesMessagesQueues.get(currentMicroService).add(b);
+		BroadcastLog broadcastLog = broadcastLogs.get(b.getClass());
+
+		// append the broadcast message b once to the log read by all the Micro-Services which subscribed to receive this specific message type
+		if (broadcastLog != null)
+			broadcastLog.append(b);
 	}
 
 	@Override
 	public <T> Future<T> sendEvent(Event<T> e) {
 
-		LinkedBlockingQueue<MicroService> roundRobinServicesQueue = eventSubscribeList.get(e.getClass()); // get the services that can handle the event e
+		EventSubscribers capableServices = eventSubscribeList.get(e.getClass()); // get the services that can handle the event e
+		Mailbox targetMailbox = capableServices == null ? null : capableServices.select(e); // let the dispatch strategy of the event type choose one of them
 
-		if (roundRobinServicesQueue == null || roundRobinServicesQueue.isEmpty())
+		if (targetMailbox == null)
 			return null; // return null if there are no services that can handle the event e
 
+		capableServices.recordSent(1);
 		Future<T> futureOutput = new Future<>();
-		futureHashMap.put(e, futureOutput);
-		MicroService microServiceAtTheTop = roundRobinServicesQueue.poll(); // take and remove the microservice from the top of the queue of services that can handle the event e
-		microServicesMessagesQueues.get(Objects.requireNonNull(microServiceAtTheTop)).add(e); // assign the event to the microservice from the top of the queue
-		roundRobinServicesQueue.add(microServiceAtTheTop); // return the microservice from the top of the queue to the back of the queue to continue with the round-robin
+		EventEnvelope<T> envelope = new EventEnvelope<>(e, futureOutput, capableServices);
+
+		// assign the event to the chosen microservice together with its future object, in the lane of its type
+		if (capableServices.getLane() == MessageLane.CONTROL)
+			targetMailbox.putControl(envelope);
+		else if (admit(capableServices, targetMailbox, null))
+			targetMailbox.put(envelope);
+		else
+			futureOutput.resolve(null); // the mailbox is full - the sender gets a rejected future right away
+
+		if (targetMailbox.isClosed())
+			discard(envelope); // the chosen microservice unregistered meanwhile and may have drained its mailbox already
 
 		return futureOutput;
 	}
 
+	@Override
+	public <T> List<Future<T>> sendEvents(List<? extends Event<T>> events) {
+
+		List<Future<T>> futuresOutput = new ArrayList<>(events.size());
+		IdentityHashMap<Class<?>, BatchDispatch> batchDispatches = new IdentityHashMap<>(); // the events of each type in the batch and their chosen services
+		IdentityHashMap<Mailbox, List<Message>> envelopesPerMailbox = new IdentityHashMap<>(); // the envelopes assigned to each chosen microservice
+
+		// resolve the subscribers of each event type once, and let its dispatch strategy choose the services for all the events of the type at once
+		for (Event<T> currentEvent : events)
+			batchDispatches.computeIfAbsent(currentEvent.getClass(), eventType -> new BatchDispatch(eventSubscribeList.get(eventType))).events.add(currentEvent);
+
+		batchDispatches.forEach((eventType, batchDispatch) -> batchDispatch.selectTargets());
+
+		for (Event<T> currentEvent : events) {
+
+			BatchDispatch batchDispatch = batchDispatches.get(currentEvent.getClass());
+			Mailbox targetMailbox = batchDispatch.nextTarget();
+
+			if (targetMailbox == null)
+				futuresOutput.add(null); // no service can handle the event
+			else {
+
+				Future<T> futureOutput = new Future<>();
+				EventEnvelope<T> envelope = new EventEnvelope<>(currentEvent, futureOutput, batchDispatch.capableServices);
+
+				if (batchDispatch.capableServices.getLane() == MessageLane.CONTROL) {
+					targetMailbox.putControl(envelope); // control events are rare - no need to batch them
+					if (targetMailbox.isClosed())
+						discard(envelope);
+				}
+				else {
+
+					List<Message> pendingEnvelopes = envelopesPerMailbox.computeIfAbsent(targetMailbox, mailbox -> new ArrayList<>());
+
+					if (admit(batchDispatch.capableServices, targetMailbox, pendingEnvelopes))
+						pendingEnvelopes.add(envelope);
+					else
+						futureOutput.resolve(null); // the mailbox is full - the sender gets a rejected future right away
+				}
+
+				futuresOutput.add(futureOutput);
+			}
+		}
+
+		// a single bulk operation and wakeup for each chosen microservice
+		envelopesPerMailbox.forEach((targetMailbox, envelopes) -> {
+
+			targetMailbox.putAll(envelopes);
+
+			if (targetMailbox.isClosed()) // the microservice unregistered meanwhile and may have drained its mailbox already
+				for (Message envelope : envelopes)
+					discard((EventEnvelope<?>) envelope);
+		});
+
+		return futuresOutput;
+	}
+
 	@Override
 	public void register(MicroService m) {
 
-		microServicesMessagesQueues.put(m, new LinkedBlockingQueue<>()); // register the microservice m in the message bus and assign a new queue of messages to it
+		int batchSize = batchSizes.applyAsInt(m);
+
+		if (batchSize < 1)
+			throw new IllegalArgumentException("The batch size of a microservice must be positive");
+
+		Mailbox mailbox = mailboxFactory.apply(m);
+		microServicesRegistrations.put(m, new ServiceRegistration(mailbox, batchSize)); // register the microservice m in the message bus and assign a new mailbox to it
+
 	}
 
 	@Override
 	public void unregister(MicroService m) {
 
-		// delete the microservice from any queue it's in
-		eventSubscribeList.forEach((event, eventServicesList) -> eventServicesList.remove(m));
-		broadcastSubscribeList.forEach((broadcast, broadcastServicesList) -> broadcastServicesList.remove(m));
+		ServiceRegistration registration = microServicesRegistrations.get(m);
 
-		// resolve all of the microservice's currently pending events
+		if (registration == null)
+			return; // nothing should happen if m was not registered
 
-		microServicesMessagesQueues.forEach((microService, currentMessage) -> {
+		// delete the microservice from the lists it subscribed to - no other list is touched
+		registration.unsubscribeAll();
 
-			//noinspection SuspiciousMethodCalls - since currentMessage is checked to be of Event type
-			if (currentMessage instanceof Event && futureHashMap.contains(currentMessage))
-				futureHashMap.get(currentMessage).resolve(null);
-		});
+		// close the mailbox before draining it - senders that chose it before it was unsubscribed see it closed and dispose of their own events
+		Mailbox mailbox = registration.getMailbox();
+		mailbox.close();
+
+		Message pendingMessage;
+		while ((pendingMessage = mailbox.poll()) != null)
+			if (pendingMessage instanceof EventEnvelope)
+				discard((EventEnvelope<?>) pendingMessage); // no one is going to handle the event - resolve its future with null
 
-		microServicesMessagesQueues.remove(m); // delete the entry with value m to from the microservices hash map
+		microServicesRegistrations.remove(m); // delete the entry with value m to from the microservices hash map
 	}
 
 	@Override
 	public Message awaitMessage(MicroService m) throws InterruptedException {
 
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
 		// as the javadoc says - this method throws an IllegalStateException if the microservice m isn't registered
-		if (isNotRegistered(m))
+		if (registration == null)
+			throw new IllegalStateException("The current MicroService is not registered to the MessageBus");
+
+		handlingMicroService.set(m); // events taken from now on are completed on this thread
+
+		Mailbox mailbox = registration.getMailbox();
+
+		// park only if there is no message for the microservice anywhere
+		while (true) {
+
+			Message currentMessage = nextMessage(registration);
+
+			if (currentMessage != null)
+				return currentMessage;
+
+			registration.setWaiting(true); // only once the mailbox was found empty, so a virtual clock sees the service quiet
+			try {
+				if (registration.canSteal())
+					mailbox.awaitNanos(STEAL_RETRY_NANOS); // wake up now and then to look for work at the siblings
+				else
+					mailbox.await();
+			} finally {
+				registration.setWaiting(false); // before taking anything out of the mailbox
+			}
+		}
+	}
+
+	/**
+	 * Delivers a continuation to the mailbox of the micro-service that registered it - in the control lane,
+	 * as it carries on work the micro-service already took on, and is never refused by a bound mailbox
+	 * @param m            The micro-service that registered the continuation
+	 * @param continuation The continuation, holding the result of the future it waited for
+	 */
+	void sendContinuation(MicroService m, Continuation<?> continuation) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		if (registration != null) // a continuation of an unregistered micro-service is dropped
+			registration.getMailbox().putControl(continuation);
+	}
+
+	/**
+	 * Retires the micro-service {@code m} - it gets no new events from now on, handles the events already waiting
+	 * for it and completes the events it took on, and then terminates and unregisters. It keeps reading its
+	 * broadcasts meanwhile. An event sent to it while it was being unsubscribed is resolved with null once it left.
+	 * @param m The micro-service to retire
+	 */
+	void retire(MicroService m) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		if (registration == null)
+			return; // m left already
+
+		registration.unsubscribeEvents(); // the dispatch strategies stop choosing m
+		registration.getMailbox().put(Retirement.INSTANCE); // behind the events already waiting for m
+	}
+
+	/**
+	 * @param type The event type
+	 * @return The subscribers of {@code type} - holding the statistics of its events
+	 */
+	EventSubscribers subscribersOf(Class<? extends Event> type) {
+
+		return eventSubscribeList.computeIfAbsent(type, EventSubscribers::new);
+	}
+
+	/**
+	 * @return The micro-service whose event loop runs on the current thread, or null if there is none
+	 */
+	MicroService handlingService() {
+
+		return handlingMicroService.get();
+	}
+
+	/**
+	 * Ends the turn of the micro-service whose event loop runs on the current thread, so a pooled thread
+	 * running another micro-service next does not complete events on its behalf
+	 */
+	void releaseHandlingService() {
+
+		handlingMicroService.remove();
+	}
+
+	/**
+	 * @return The registration of the micro-service whose event loop runs on the current thread, or null if there is none
+	 */
+	ServiceRegistration currentRegistration() {
+
+		MicroService currentService = handlingMicroService.get();
+
+		return currentService == null ? null : microServicesRegistrations.get(currentService);
+	}
+
+	/**
+	 * @return The amount of registered micro-services
+	 */
+	int registeredServices() {
+
+		return microServicesRegistrations.size();
+	}
+
+	/**
+	 * Checks whether every registered micro-service but {@code except} is quiet - see {@link ServiceRegistration#isQuiet()}.
+	 * The services are looked at one after another, so a service may wake up a service already found quiet -
+	 * the check holds only if no message was put into a mailbox or a broadcast log while it looked.
+	 * @param except The micro-service not to look at, or null to look at all of them
+	 * @return true if the micro-services are quiet
+	 */
+	boolean isQuiescent(MicroService except) {
+
+		long sentMessages = sentMessages();
+
+		for (Map.Entry<MicroService, ServiceRegistration> registration : microServicesRegistrations.entrySet())
+			if (registration.getKey() != except && !registration.getValue().isQuiet())
+				return false;
+
+		return sentMessages() == sentMessages;
+	}
+
+	/**
+	 * @return The amount of messages put into the mailboxes of the registered micro-services and into the broadcast logs so far
+	 */
+	private long sentMessages() {
+
+		long sentMessages = 0;
+
+		for (ServiceRegistration registration : microServicesRegistrations.values())
+			sentMessages += registration.getMailbox().getReceivedCount();
+
+		for (BroadcastLog broadcastLog : broadcastLogs.values())
+			sentMessages += broadcastLog.getAppendedBroadcasts();
+
+		return sentMessages;
+	}
+
+	/**
+	 * The batch version of {@link #awaitMessage(MicroService)} - waits until there are messages for {@code m},
+	 * and takes up to its batch size of them at once, in the order {@link #awaitMessage(MicroService)} would return them
+	 * @param m     The micro-service requesting to take messages
+	 * @param batch The empty list to add the taken messages to - reused by the event loop of {@code m}
+	 * @throws InterruptedException if interrupted while waiting for a message
+	 */
+	void awaitMessages(MicroService m, List<Message> batch) throws InterruptedException {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		if (registration == null)
+			throw new IllegalStateException("The current MicroService is not registered to the MessageBus");
+
+		handlingMicroService.set(m); // events taken from now on are completed on this thread
+
+		Mailbox mailbox = registration.getMailbox();
+
+		// park only if there is no message for the microservice anywhere
+		while (true) {
+
+			fillBatch(registration, batch);
+
+			if (!batch.isEmpty())
+				return;
+
+			registration.setWaiting(true);
+			try {
+				if (registration.canSteal())
+					mailbox.awaitNanos(STEAL_RETRY_NANOS);
+				else
+					mailbox.await();
+			} finally {
+				registration.setWaiting(false);
+			}
+		}
+	}
+
+	/**
+	 * The non-blocking version of {@link #awaitMessage(MicroService)} - used by the {@link ActorScheduler},
+	 * which runs a micro-service only while there are messages for it
+	 * @param m The micro-service requesting to take a message
+	 * @return The next message for {@code m}, or null if there is none
+	 */
+	Message pollMessage(MicroService m) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		if (registration == null)
 			throw new IllegalStateException("The current MicroService is not registered to the MessageBus");
 
-		return microServicesMessagesQueues.get(m).take(); // return the current message
+		handlingMicroService.set(m); // events taken from now on are completed on this thread
+
+		return nextMessage(registration);
+	}
+
+	/**
+	 * @param m The micro-service
+	 * @return true if there are messages waiting for {@code m} in its mailbox or in the broadcast logs it subscribed to
+	 */
+	boolean hasMessages(MicroService m) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		return registration != null && (!registration.getMailbox().isEmpty() || registration.hasUnreadBroadcasts());
+	}
+
+	/**
+	 * Sets the listener run whenever the mailbox of {@code m} is signalled - see {@link Mailbox#setSignalListener(Runnable)}
+	 * @param m              The registered micro-service
+	 * @param signalListener The listener, or null for none
+	 */
+	void setSignalListener(MicroService m, Runnable signalListener) {
+
+		ServiceRegistration registration = microServicesRegistrations.get(m);
+
+		if (registration != null)
+			registration.getMailbox().setSignalListener(signalListener);
+	}
+
+	/**
+	 * Takes the next message for a micro-service, merging its broadcast cursors with its mailbox - control broadcasts,
+	 * then the mailbox's control and normal lanes, then normal broadcasts, then events stolen from busy siblings
+	 * @param registration The registration of the micro-service
+	 * @return The next message, or null if there is none
+	 */
+	private Message nextMessage(ServiceRegistration registration) {
+
+		Mailbox mailbox = registration.getMailbox();
+		Message currentMessage;
+
+		do {
+			currentMessage = registration.nextBroadcast(MessageLane.CONTROL);
+
+			if (currentMessage == null)
+				currentMessage = mailbox.poll();
+		} while (!claimTaken(mailbox, currentMessage)); // skip events shed or stolen while waiting in the mailbox
+
+		if (currentMessage == null)
+			currentMessage = registration.nextBroadcast(MessageLane.NORMAL);
+
+		if (currentMessage == null)
+			currentMessage = registration.steal(); // all the broadcasts were read - stealing cannot reorder the microservice's own messages
+
+		return currentMessage;
+	}
+
+	/**
+	 * Takes the messages waiting for a microservice into {@code batch}, up to its batch size, in the order of
+	 * {@link #nextMessage(ServiceRegistration)} - the control broadcasts, the mailbox, the normal broadcasts and
+	 * then, only if there was nothing else, a stolen event
+	 * @param registration The registration of the microservice
+	 * @param batch        The empty list to add the taken messages to
+	 */
+	private void fillBatch(ServiceRegistration registration, List<Message> batch) {
+
+		int batchSize = registration.getBatchSize();
+		Message currentMessage;
+
+		while (batch.size() < batchSize && (currentMessage = registration.nextBroadcast(MessageLane.CONTROL)) != null)
+			batch.add(currentMessage);
+
+		Mailbox mailbox = registration.getMailbox();
+		int firstDrained = batch.size();
+		mailbox.drainTo(batch, batchSize - firstDrained);
+
+		// skip events shed or stolen while waiting in the mailbox - keep the rest in place
+		int keptMessages = firstDrained;
+		for (int i = firstDrained; i < batch.size(); i++) {
+
+			currentMessage = batch.get(i);
+			if (claimTaken(mailbox, currentMessage))
+				batch.set(keptMessages++, currentMessage);
+		}
+		batch.subList(keptMessages, batch.size()).clear();
+
+		while (batch.size() < batchSize && (currentMessage = registration.nextBroadcast(MessageLane.NORMAL)) != null)
+			batch.add(currentMessage);
+
+		if (batch.isEmpty() && (currentMessage = registration.steal()) != null)
+			batch.add(currentMessage);
+	}
+
+	/**
+	 * Claims a message the consumer took out of its mailbox, if it is an event - an event already claimed was
+	 * abandoned by the mailbox, and is skipped
+	 * @param mailbox The mailbox the message was taken out of
+	 * @param message The message taken, or null
+	 * @return false if the message is an abandoned event, true otherwise
+	 */
+	private static boolean claimTaken(Mailbox mailbox, Message message) {
+
+		if (!(message instanceof EventEnvelope) || ((EventEnvelope<?>) message).claim())
+			return true;
+
+		mailbox.removeAbandoned();
+		return false;
 	}
 
 	/**
@@ -145,6 +675,256 @@ public class MessageBusImpl implements MessageBus {
 	 */
 	private boolean isNotRegistered (MicroService m){
 
-		return !microServicesMessagesQueues.containsKey(m);
+		return !microServicesRegistrations.containsKey(m);
+	}
+
+	/**
+	 * Applies the overflow policy of an event type if the mailbox chosen for an event of the type is full
+	 * @param capableServices  The subscribers of the event type
+	 * @param targetMailbox    The mailbox chosen for the event
+	 * @param pendingEnvelopes The envelopes of the same batch already admitted to the mailbox and not put into it yet, or null
+	 * @return true if the event may be put into the mailbox, false if it is rejected
+	 */
+	private boolean admit(EventSubscribers capableServices, Mailbox targetMailbox, List<Message> pendingEnvelopes) {
+
+		int capacity = capableServices.capacityOf(targetMailbox);
+
+		if (capacity == Integer.MAX_VALUE)
+			return true; // the common case - the mailbox is unbounded for this event type
+
+		int pendingCount = pendingEnvelopes == null ? 0 : pendingEnvelopes.size();
+
+		if (targetMailbox.size() + pendingCount < capacity)
+			return true;
+
+		OverflowCounters typeCounters = capableServices.getOverflowCounters();
+		OverflowCounters mailboxCounters = targetMailbox.getOverflowCounters();
+
+		switch (capableServices.getOverflowPolicy()) {
+
+			case BLOCK:
+				if (awaitRoom(targetMailbox, capacity, capableServices.getBlockTimeoutNanos(), pendingEnvelopes)) {
+					typeCounters.recordBlocked();
+					mailboxCounters.recordBlocked();
+					return true;
+				}
+				break;
+
+			case SHED_OLDEST:
+				if (shedOldest(targetMailbox, pendingEnvelopes)) {
+					typeCounters.recordShed();
+					mailboxCounters.recordShed();
+					return true;
+				}
+				break;
+
+			default:
+				break;
+		}
+
+		typeCounters.recordRejected();
+		mailboxCounters.recordRejected();
+		return false;
+	}
+
+	/**
+	 * Waits, pausing for exponentially growing periods, until the amount of messages waiting in a mailbox is below its capacity
+	 * @param mailbox          The full mailbox
+	 * @param capacity         The capacity of the mailbox for the sent event
+	 * @param timeoutNanos     The longest time to wait
+	 * @param pendingEnvelopes The envelopes of the same batch not put into the mailbox yet, or null - they are put first
+	 * @return true if the mailbox has room, false if the time ran out or the sender was interrupted
+	 */
+	private static boolean awaitRoom(Mailbox mailbox, int capacity, long timeoutNanos, List<Message> pendingEnvelopes) {
+
+		// the consumer cannot make room for envelopes it was not given yet
+		if (pendingEnvelopes != null && !pendingEnvelopes.isEmpty()) {
+			mailbox.putAll(pendingEnvelopes);
+			pendingEnvelopes.clear();
+		}
+
+		long deadline = System.nanoTime() + timeoutNanos;
+		long backoffNanos = MIN_BLOCK_BACKOFF_NANOS;
+
+		while (mailbox.size() >= capacity) {
+
+			long remainingNanos = deadline - System.nanoTime();
+
+			if (remainingNanos <= 0 || Thread.currentThread().isInterrupted())
+				return false; // the interrupt flag is kept for the sender to handle
+
+			LockSupport.parkNanos(Math.min(backoffNanos, remainingNanos));
+			backoffNanos = Math.min(backoffNanos << 1, MAX_BLOCK_BACKOFF_NANOS);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Discards the oldest event waiting for a mailbox - in the mailbox itself or among the envelopes of the same batch
+	 * not put into it yet - and resolves its future object with null. The events shed or stolen before are passed over
+	 * without counting towards the scan limit, as the consumer did not skip them yet
+	 * @param mailbox          The full mailbox
+	 * @param pendingEnvelopes The envelopes of the same batch not put into the mailbox yet, or null
+	 * @return true if an event was discarded, false if none could be
+	 */
+	private static boolean shedOldest(Mailbox mailbox, List<Message> pendingEnvelopes) {
+
+		int triedMessages = 0;
+
+		for (Iterator<Message> waitingMessages = mailbox.iterator(); waitingMessages.hasNext() && triedMessages < SHED_SCAN_LIMIT; ) {
+
+			Message oldestMessage = waitingMessages.next();
+
+			if (oldestMessage instanceof EventEnvelope && ((EventEnvelope<?>) oldestMessage).isClaimed())
+				continue; // abandoned already
+
+			triedMessages++;
+
+			if (oldestMessage instanceof EventEnvelope && discard((EventEnvelope<?>) oldestMessage)) {
+				mailbox.abandon(); // the consumer skips the claimed envelope when it reaches it
+				return true;
+			}
+		}
+
+		if (pendingEnvelopes != null && !pendingEnvelopes.isEmpty())
+			return discard((EventEnvelope<?>) pendingEnvelopes.remove(0));
+
+		return false;
+	}
+
+	/**
+	 * Registers a management bean in the platform MBean server - a bean that cannot be registered is skipped,
+	 * as the message-bus works the same without it. Used by the other parts of the framework that publish statistics as well.
+	 * @param mBean          The bean
+	 * @param mBeanInterface The MXBean interface of the bean
+	 * @param objectName     The object name of the bean
+	 */
+	static <T> void registerMBean(T mBean, Class<T> mBeanInterface, String objectName) {
+
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(new StandardMBean(mBean, mBeanInterface, true), new ObjectName(objectName));
+		} catch (JMException exception) {
+			// already registered - e.g. by another message-bus loaded by a different class loader
+		}
+	}
+
+	/**
+	 * Claims the envelope {@code envelope} so it is never handled, and resolves its future object with null
+	 * @param envelope The envelope to discard
+	 * @return true if the envelope was discarded, false if it was already claimed by its consumer
+	 */
+	private static <T> boolean discard(EventEnvelope<T> envelope) {
+
+		if (!envelope.claim())
+			return false;
+
+		envelope.getFuture().resolve(null);
+		return true;
+	}
+
+	/**
+	 * The management bean of the message-bus - reads the counters of the message types and the mailboxes on every call
+	 */
+	private class Monitor implements MessageBusMXBean {
+
+		@Override
+		public int getRegisteredServices() {
+
+			return microServicesRegistrations.size();
+		}
+
+		@Override
+		public Map<String, Long> getEventsSent() {
+
+			Map<String, Long> eventsSent = new TreeMap<>();
+			eventSubscribeList.forEach((eventType, capableServices) -> eventsSent.put(eventType.getSimpleName(), capableServices.getSentEvents()));
+			return eventsSent;
+		}
+
+		@Override
+		public Map<String, Long> getEventsCompleted() {
+
+			Map<String, Long> eventsCompleted = new TreeMap<>();
+			eventSubscribeList.forEach((eventType, capableServices) -> eventsCompleted.put(eventType.getSimpleName(), capableServices.getCompletedEvents()));
+			return eventsCompleted;
+		}
+
+		@Override
+		public Map<String, Long> getBroadcastsSent() {
+
+			Map<String, Long> broadcastsSent = new TreeMap<>();
+			broadcastLogs.forEach((broadcastType, broadcastLog) -> broadcastsSent.put(broadcastType.getSimpleName(), broadcastLog.getAppendedBroadcasts()));
+			return broadcastsSent;
+		}
+
+		@Override
+		public Map<String, Integer> getMailboxDepths() {
+
+			Map<String, Integer> mailboxDepths = new TreeMap<>();
+			microServicesRegistrations.forEach((microService, registration) -> mailboxDepths.put(microService.getName(), registration.getMailbox().depth()));
+			return mailboxDepths;
+		}
+
+		@Override
+		public Map<String, Long> getMessagesReceived() {
+
+			Map<String, Long> messagesReceived = new TreeMap<>();
+			microServicesRegistrations.forEach((microService, registration) -> messagesReceived.put(microService.getName(), registration.getMailbox().getReceivedCount()));
+			return messagesReceived;
+		}
+
+		@Override
+		public Map<String, Long> getMessagesHandled() {
+
+			Map<String, Long> messagesHandled = new TreeMap<>();
+			microServicesRegistrations.forEach((microService, registration) -> messagesHandled.put(microService.getName(), microService.getStatistics().getMessagesHandled()));
+			return messagesHandled;
+		}
+
+		@Override
+		public Map<String, List<MessageTypeStatistics>> getMessageTypeStatistics() {
+
+			Map<String, List<MessageTypeStatistics>> messageTypeStatistics = new TreeMap<>();
+			microServicesRegistrations.forEach((microService, registration) -> messageTypeStatistics.put(microService.getName(), microService.getStatistics().getMessageTypeStatistics()));
+			return messageTypeStatistics;
+		}
+	}
+
+	/**
+	 * The events of a single type sent in a call to {@link #sendEvents(List)}, and the services chosen for them
+	 */
+	private static class BatchDispatch {
+
+		private final EventSubscribers capableServices; // null if no service ever subscribed to the event type
+		private final List<Event<?>> events;
+		private Mailbox[] targetMailboxes; // the mailbox chosen for each of the events, null if there are no subscribers
+		private int nextTargetIndex;
+
+		private BatchDispatch(EventSubscribers capableServices) {
+
+			this.capableServices = capableServices;
+			events = new ArrayList<>();
+		}
+
+		/**
+		 * Lets the dispatch strategy of the event type choose the services for all the events at once
+		 */
+		private void selectTargets() {
+
+			if (capableServices != null)
+				targetMailboxes = capableServices.selectAll(events);
+
+			if (targetMailboxes != null)
+				capableServices.recordSent(events.size());
+		}
+
+		/**
+		 * @return The mailbox chosen for the next event of the type, or null if there are no subscribers
+		 */
+		private Mailbox nextTarget() {
+
+			return targetMailboxes == null ? null : targetMailboxes[nextTargetIndex++];
+		}
 	}
 }
\ No newline at end of file
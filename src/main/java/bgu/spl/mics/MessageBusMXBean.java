@@ -0,0 +1,56 @@
+package bgu.spl.mics;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The management interface of the {@link MessageBusImpl} - registered in the platform MBean server
+ * as {@code bgu.spl.mics:type=MessageBus}. The counts only grow, so rates are the differences between
+ * two reads divided by the time between them.
+ * <p>
+ * The statistics of the micro-services are keyed by their names, and cover the micro-services registered at
+ * the time of the read - a single bean rather than one per micro-service, so registering and unregistering
+ * a micro-service never goes through the MBean server.
+ */
+public interface MessageBusMXBean {
+
+    /**
+     * @return The amount of registered micro-services
+     */
+    int getRegisteredServices();
+
+    /**
+     * @return The amount of events of each type sent to a subscriber so far, by the simple name of the type
+     */
+    Map<String, Long> getEventsSent();
+
+    /**
+     * @return The amount of events of each type completed so far, by the simple name of the type
+     */
+    Map<String, Long> getEventsCompleted();
+
+    /**
+     * @return The amount of broadcasts of each type sent so far, by the simple name of the type
+     */
+    Map<String, Long> getBroadcastsSent();
+
+    /**
+     * @return The current depth of the mailbox of each registered micro-service, by its name
+     */
+    Map<String, Integer> getMailboxDepths();
+
+    /**
+     * @return The amount of messages put into the mailbox of each registered micro-service so far, by its name
+     */
+    Map<String, Long> getMessagesReceived();
+
+    /**
+     * @return The amount of messages each registered micro-service handled so far - its callbacks of events and broadcasts, by its name
+     */
+    Map<String, Long> getMessagesHandled();
+
+    /**
+     * @return The statistics of each message type each registered micro-service handled, by its name
+     */
+    Map<String, List<MessageTypeStatistics>> getMessageTypeStatistics();
+}
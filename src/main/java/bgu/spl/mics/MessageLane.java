@@ -0,0 +1,12 @@
+package bgu.spl.mics;
+
+/**
+ * Enum representing the lane a message type travels in through the {@link MessageBus}.
+ * Messages in the control lane are always taken by a micro-service before the messages in
+ * the normal lane, whatever the order they were sent in.
+ * By default broadcasts travel in the control lane and events in the normal lane.
+ */
+public enum MessageLane {
+
+    CONTROL, NORMAL
+}
@@ -0,0 +1,43 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assigns dense integer IDs to the {@link Message} types - 0, 1, 2 and so on, in the order the types are
+ * first seen, typically when a micro-service subscribes to them. A micro-service keeps its callbacks in an
+ * array indexed by these IDs, and an {@link EventEnvelope} carries the ID of its event type, so handling a
+ * message takes no hash lookup. The ID of a type is cached on the class itself by a {@link ClassValue}.
+ */
+final class MessageTypeIds {
+
+	// fields
+
+	private static final ConcurrentHashMap<Class<?>, Integer> assignedIds = new ConcurrentHashMap<>(); // keeps the IDs dense if two threads see a new type at once
+	private static final AtomicInteger nextId = new AtomicInteger();
+	private static final ClassValue<Integer> typeIds = new ClassValue<Integer>() {
+
+		@Override
+		protected Integer computeValue(Class<?> type) {
+
+			return assignedIds.computeIfAbsent(type, newType -> nextId.getAndIncrement());
+		}
+	};
+
+	// constructor
+
+	private MessageTypeIds() {
+
+	}
+
+	// methods
+
+	/**
+	 * @param type The message type
+	 * @return The ID of {@code type} - assigned on the first call for the type
+	 */
+	static int of(Class<? extends Message> type) {
+
+		return typeIds.get(type);
+	}
+}
@@ -0,0 +1,147 @@
+package bgu.spl.mics;
+
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A snapshot of the statistics of a single message type handled by a single micro-service - exposed through
+ * {@link MessageBusMXBean#getMessageTypeStatistics()}. All the durations are in nanoseconds, and the
+ * percentiles are the upper bounds of the power-of-two buckets of the histograms, which hold the counts of
+ * the durations in [2^(b-1), 2^b) at index {@code b}.
+ * <p>
+ * The wait time is measured from sending a message to calling its callback - only for events, as broadcasts
+ * are read from a log shared by all their subscribers rather than waiting in a mailbox.
+ */
+public class MessageTypeStatistics {
+
+	// fields
+
+	private final String messageType;
+	private final long handledMessages;
+	private final long callbackTimeMean, callbackTimeP50, callbackTimeP99;
+	private final long[] callbackTimeHistogram;
+	private final long waitTimeMean, waitTimeP50, waitTimeP99;
+	private final long[] waitTimeHistogram;
+
+	// constructor
+
+	MessageTypeStatistics(String messageType, LatencyHistogram callbackTimes, LatencyHistogram waitTimes) {
+
+		this.messageType = messageType;
+		handledMessages = callbackTimes.getCount();
+		callbackTimeMean = callbackTimes.getMeanNanos();
+		callbackTimeP50 = callbackTimes.getPercentileNanos(50);
+		callbackTimeP99 = callbackTimes.getPercentileNanos(99);
+		callbackTimeHistogram = callbackTimes.getBuckets();
+		waitTimeMean = waitTimes.getMeanNanos();
+		waitTimeP50 = waitTimes.getPercentileNanos(50);
+		waitTimeP99 = waitTimes.getPercentileNanos(99);
+		waitTimeHistogram = waitTimes.getBuckets();
+	}
+
+	private MessageTypeStatistics(CompositeData data) {
+
+		messageType = (String) data.get("messageType");
+		handledMessages = (Long) data.get("handledMessages");
+		callbackTimeMean = (Long) data.get("callbackTimeMean");
+		callbackTimeP50 = (Long) data.get("callbackTimeP50");
+		callbackTimeP99 = (Long) data.get("callbackTimeP99");
+		callbackTimeHistogram = (long[]) data.get("callbackTimeHistogram");
+		waitTimeMean = (Long) data.get("waitTimeMean");
+		waitTimeP50 = (Long) data.get("waitTimeP50");
+		waitTimeP99 = (Long) data.get("waitTimeP99");
+		waitTimeHistogram = (long[]) data.get("waitTimeHistogram");
+	}
+
+	// methods
+
+	/**
+	 * Rebuilds the statistics read by a management client - lets {@link javax.management.JMX#newMXBeanProxy}
+	 * make proxies of {@link MessageBusMXBean}
+	 * @param data The statistics as the MBean server returns them
+	 * @return The statistics
+	 */
+	public static MessageTypeStatistics from(CompositeData data) {
+
+		return new MessageTypeStatistics(data);
+	}
+
+	/**
+	 * @return The name of the message type
+	 */
+	public String getMessageType() {
+
+		return messageType;
+	}
+
+	/**
+	 * @return The amount of messages of the type handled so far
+	 */
+	public long getHandledMessages() {
+
+		return handledMessages;
+	}
+
+	/**
+	 * @return The mean time the callback of the type ran
+	 */
+	public long getCallbackTimeMean() {
+
+		return callbackTimeMean;
+	}
+
+	/**
+	 * @return The median time the callback of the type ran
+	 */
+	public long getCallbackTimeP50() {
+
+		return callbackTimeP50;
+	}
+
+	/**
+	 * @return The 99th percentile of the time the callback of the type ran
+	 */
+	public long getCallbackTimeP99() {
+
+		return callbackTimeP99;
+	}
+
+	/**
+	 * @return The histogram of the time the callback of the type ran
+	 */
+	public long[] getCallbackTimeHistogram() {
+
+		return callbackTimeHistogram.clone();
+	}
+
+	/**
+	 * @return The mean time the messages of the type waited for the micro-service
+	 */
+	public long getWaitTimeMean() {
+
+		return waitTimeMean;
+	}
+
+	/**
+	 * @return The median time the messages of the type waited for the micro-service
+	 */
+	public long getWaitTimeP50() {
+
+		return waitTimeP50;
+	}
+
+	/**
+	 * @return The 99th percentile of the time the messages of the type waited for the micro-service
+	 */
+	public long getWaitTimeP99() {
+
+		return waitTimeP99;
+	}
+
+	/**
+	 * @return The histogram of the time the messages of the type waited for the micro-service
+	 */
+	public long[] getWaitTimeHistogram() {
+
+		return waitTimeHistogram.clone();
+	}
+}
@@ -1,6 +1,11 @@
 package bgu.spl.mics;
 
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 
 /**
  * The MicroService is an abstract class that any micro-service in the system
@@ -17,7 +22,11 @@ import java.util.concurrent.ConcurrentHashMap;
  * method). The abstract MicroService stores this callback together with the
  * type of the message is related to.
  * 
- * Only private fields and methods may be added to this class.
+ * Besides the original API, a micro-service offers {@link #sendEvents(List)} and
+ * {@link #whenResolved(Future, Callback)} to its subclasses, and the package-private hooks
+ * {@code start}, {@code runTurn} and {@code finish} through which an {@link ActorScheduler} runs it
+ * on a shared thread, {@code getStatistics} for its MXBean and {@code completeEvent} for the
+ * message-bus. Any other field or method added to this class must be private.
  * <p>
  */
 
@@ -28,9 +37,13 @@ public abstract class MicroService implements Runnable {
     // fields
 
     private boolean terminated = false;
+    private boolean retiring = false; // true once the micro-service was retired - it terminates as soon as it has no pending events
     private final String name;
     private final MessageBusImpl messageBusInstance; // singleton MessageBus instance
-    private final ConcurrentHashMap<Class<? extends Message>, Callback> callbackMap; // a final hash map of all callbacks for the current micro-service
+    private Callback[] callbacks; // the callbacks of the current micro-service, indexed by the dense IDs of their message types
+    private EventEnvelope currentEnvelope; // the envelope of the event whose callback, or continuation, is running right now
+    private final Set<EventEnvelope> pendingEnvelopes; // envelopes of events whose callbacks returned before completing them - the same event may be sent more than once
+    private final ServiceStatistics statistics; // the amount of handled messages and their callback and wait time histograms, for each message type
 
     // constructor
 
@@ -42,7 +55,9 @@ public abstract class MicroService implements Runnable {
 
         this.name = name;
         messageBusInstance = MessageBusImpl.getInstance();
-        callbackMap = new ConcurrentHashMap<>();
+        callbacks = new Callback[0];
+        pendingEnvelopes = Collections.newSetFromMap(new IdentityHashMap<>());
+        statistics = new ServiceStatistics(name);
     }
 
     // methods
@@ -71,7 +86,7 @@ public abstract class MicroService implements Runnable {
     protected final <T, E extends Event<T>> void subscribeEvent(Class<E> type, Callback<E> callback) {
 
         messageBusInstance.subscribeEvent(type, this); // subscribe to the events
-        callbackMap.put(type, callback); // store the callback of the broadcast in the callback map
+        storeCallback(type, callback); // store the callback of the event in the callbacks table
     }
 
     /**
@@ -97,7 +112,7 @@ public abstract class MicroService implements Runnable {
     protected final <B extends Broadcast> void subscribeBroadcast(Class<B> type, Callback<B> callback) {
 
         messageBusInstance.subscribeBroadcast(type, this); // subscribe to the broadcast message
-        callbackMap.put(type, callback); // store the callback of the broadcast in the callback map
+        storeCallback(type, callback); // store the callback of the broadcast in the callbacks table
     }
 
     /**
@@ -117,6 +132,21 @@ public abstract class MicroService implements Runnable {
         return messageBusInstance.sendEvent(e);
     }
 
+    /**
+     * Sends all the events in {@code events} using the message-bus in a single batch and
+     * receives a {@link Future<T>} object for each of them. This method must be Non-Blocking.
+     * <p>
+     * @param <T>       The type of the expected result of the requests
+     *                  {@code events}
+     * @param events    The events to send
+     * @return  		A list of {@link Future<T>} objects in the order of {@code events} - each of
+     * 	       			them is null in case no micro-service has subscribed to the type of its event.
+     */
+    protected final <T> List<Future<T>> sendEvents(List<? extends Event<T>> events) {
+
+        return messageBusInstance.sendEvents(events);
+    }
+
     /**
      * A Micro-Service calls this method in order to send the broadcast message {@code b} using the message-bus
      * to all the services subscribed to it.
@@ -130,17 +160,39 @@ public abstract class MicroService implements Runnable {
 
     /**
      * Completes the received request {@code e} with the result {@code result}
-     * using the message-bus.
+     * by resolving the {@link Future} carried by the envelope {@code e} was delivered in.
      * <p>
      * @param <T>    The type of the expected result of the processed event
      *               {@code e}.
      * @param e      The event to complete.
      * @param result The result to resolve the relevant Future object.
      *               {@code e}.
+     * @throws IllegalStateException if called off the event loop of this micro-service, or if this
+     *                               micro-service has no uncompleted event {@code e} - as {@link MessageBus#complete(Event, Object)}
      */
     protected final <T> void complete(Event<T> e, T result) {
 
-        messageBusInstance.complete(e,result);
+        if (messageBusInstance.handlingService() != this)
+            throw new IllegalStateException(name + " can complete events only from its own event loop");
+
+        completeEvent(e, result);
+    }
+
+    /**
+     * Calls {@code continuation} with the result of {@code future} once it is resolved - on the event loop of this
+     * micro-service, like the callback of a received message, so a callback can wait for the events it sent without
+     * blocking the micro-service, and the continuation can use the state of the micro-service and complete the
+     * events it received. A continuation of a micro-service that terminated meanwhile is never called.
+     * <p>
+     * @param <T>          The type of the result of {@code future}.
+     * @param future       The future to wait for.
+     * @param continuation The callback to call with the result of {@code future}.
+     */
+    protected final <T> void whenResolved(Future<T> future, Callback<T> continuation) {
+
+        EventEnvelope<?> handledEnvelope = currentEnvelope; // the continuation carries on the handling of the current event
+
+        future.onComplete(result -> messageBusInstance.sendContinuation(this, new Continuation<>(continuation, result, handledEnvelope)));
     }
 
     /**
@@ -172,19 +224,203 @@ public abstract class MicroService implements Runnable {
     @Override
     public final void run() {
 
-        messageBusInstance.register(this); //registers the current micro-service in the message bus
-        initialize(); // calls the event loop to start
+        start();
+
+        List<Message> batch = new ArrayList<>(); // the messages taken at once on every wakeup - reused by the whole loop
 
         while (!terminated) { // while the service is not terminated, get the micro-service's messages
 
             try {
-                Message currentMessage = messageBusInstance.awaitMessage(this );
-                callbackMap.get(currentMessage.getClass()).call(currentMessage); // run the callback function for the current message
+                messageBusInstance.awaitMessages(this, batch);
             } catch (InterruptedException exception) {
-                exception.printStackTrace();
+                terminate(); // interrupted while waiting for a message - e.g. by a ShutdownCoordinator whose deadline passed
             }
+
+            for (int i = 0; i < batch.size(); i++)
+                if (!terminated)
+                    dispatch(batch.get(i));
+                else if (batch.get(i) instanceof EventEnvelope)
+                    ((EventEnvelope) batch.get(i)).getFuture().resolve(null); // taken after the service terminated - no one is going to handle the event
+
+            batch.clear();
         }
 
-        messageBusInstance.unregister(this);
+        finish();
+    }
+
+    /**
+     * Registers the micro-service and initializes it - the first step of its event loop, or of its first turn on an {@link ActorScheduler}
+     */
+    final void start() {
+
+        messageBusInstance.register(this); //registers the current micro-service in the message bus
+        initialize(); // calls the event loop to start
+    }
+
+    /**
+     * Handles up to {@code maxMessages} of the messages already waiting for the micro-service, without blocking -
+     * a single turn of the micro-service on an {@link ActorScheduler}
+     * @param maxMessages The maximal amount of messages to handle
+     * @return true if the micro-service terminated, false otherwise
+     */
+    final boolean runTurn(int maxMessages) {
+
+        for (int handledMessages = 0; handledMessages < maxMessages && !terminated; handledMessages++) {
+
+            Message currentMessage = messageBusInstance.pollMessage(this);
+
+            if (currentMessage == null)
+                break;
+
+            dispatch(currentMessage);
+        }
+
+        messageBusInstance.releaseHandlingService(); // the thread may run another micro-service next
+        return terminated;
+    }
+
+    /**
+     * Unregisters the terminated micro-service - the last step of its event loop, or of its last turn on an {@link ActorScheduler}
+     */
+    final void finish() {
+
+        messageBusInstance.unregister(this); // the events still waiting in the mailbox are resolved with null
+
+        // resolve the events whose callbacks returned without completing them - they will not be completed anymore
+        for (EventEnvelope envelope : pendingEnvelopes)
+            envelope.getFuture().resolve(null);
+        pendingEnvelopes.clear();
+
+        messageBusInstance.releaseHandlingService();
+    }
+
+    /**
+     * Runs the callback of the message {@code currentMessage}
+     * @param currentMessage The message taken for the micro-service
+     */
+    private void dispatch(Message currentMessage) {
+
+        if (currentMessage instanceof EventEnvelope)
+            handleEvent((EventEnvelope) currentMessage);
+        else if (currentMessage instanceof Continuation)
+            runContinuation((Continuation) currentMessage);
+        else if (currentMessage instanceof Retirement)
+            retiring = true; // all the events sent to the micro-service before it was retired were taken
+        else {
+
+            int typeId = MessageTypeIds.of(currentMessage.getClass());
+            long startNanos = System.nanoTime();
+            callbackOf(typeId, currentMessage).call(currentMessage); // run the callback function for the current message
+            statistics.record(typeId, currentMessage.getClass(), -1, System.nanoTime() - startNanos); // a broadcast is read from its log, so its wait time is unknown
+        }
+
+        if (retiring && pendingEnvelopes.isEmpty())
+            terminate(); // the events the micro-service took on are all completed
+    }
+
+    /**
+     * Runs the callback of the event delivered in {@code envelope}. If the callback returns without
+     * completing the event, the envelope is kept until the event is completed.
+     * @param envelope The envelope taken from the micro-service's mailbox
+     */
+    private <T> void handleEvent(EventEnvelope<T> envelope) {
+
+        Event<T> currentEvent = envelope.getEvent();
+
+        currentEnvelope = envelope;
+        long startNanos = System.nanoTime();
+        callbackOf(envelope.getTypeId(), currentEvent).call(currentEvent); // run the callback function for the current event
+        statistics.record(envelope.getTypeId(), currentEvent.getClass(), startNanos - envelope.getSentNanos(), System.nanoTime() - startNanos);
+        currentEnvelope = null;
+
+        if (!envelope.getFuture().isDone())
+            pendingEnvelopes.add(envelope);
+    }
+
+    /**
+     * Runs a callback that waited for a future of this micro-service to be resolved - as part of the handling
+     * of the event whose callback registered it, so it completes that event without looking it up
+     * @param continuation The continuation taken from the micro-service's mailbox
+     */
+    private void runContinuation(Continuation<?> continuation) {
+
+        currentEnvelope = continuation.getEnvelope();
+        continuation.run();
+        currentEnvelope = null;
+    }
+
+    /**
+     * Stores {@code callback} in the callbacks table, at the dense ID of {@code type}
+     * @param type     The subscribed message type
+     * @param callback The callback of the message type
+     */
+    private void storeCallback(Class<? extends Message> type, Callback<?> callback) {
+
+        int typeId = MessageTypeIds.of(type);
+
+        if (typeId >= callbacks.length)
+            callbacks = Arrays.copyOf(callbacks, Math.max(typeId + 1, callbacks.length * 2));
+
+        callbacks[typeId] = callback;
+    }
+
+    /**
+     * @param typeId  The dense ID of the type of {@code message}
+     * @param message The message taken for the micro-service
+     * @return The callback of the message type. If the micro-service has no callback for it - which happens
+     *         only if the message-bus was used directly - the type is reported once, and its messages are ignored
+     *         from now on; the events among them are resolved with null.
+     */
+    private Callback callbackOf(int typeId, Message message) {
+
+        Callback callback = typeId < callbacks.length ? callbacks[typeId] : null;
+
+        if (callback == null) {
+
+            System.err.println(getName() + " has no callback for " + message.getClass().getName() + " - its messages are ignored");
+            callback = ignoredMessage -> {
+
+                if (ignoredMessage instanceof Event)
+                    complete((Event) ignoredMessage, null);
+            };
+            storeCallback(message.getClass(), callback);
+        }
+
+        return callback;
+    }
+
+    /**
+     * @return The statistics of the micro-service - exposed through JMX while it is registered
+     */
+    final ServiceStatistics getStatistics() {
+
+        return statistics;
+    }
+
+    /**
+     * Resolves the future object of the event {@code e} received by this micro-service.
+     * Must be called from the event loop of this micro-service.
+     * @param e      The event to complete
+     * @param result The result to resolve the future object with
+     * @throws IllegalStateException if this micro-service has no uncompleted event {@code e}
+     */
+    final <T> void completeEvent(Event<T> e, T result) {
+
+        EventEnvelope<T> envelope = null;
+
+        if (currentEnvelope != null && currentEnvelope.getEvent() == e && !currentEnvelope.getFuture().isDone())
+            envelope = currentEnvelope; // the common case - the event is completed by its own callback, or by a continuation of it
+        else
+            for (EventEnvelope pendingEnvelope : pendingEnvelopes)
+                if (pendingEnvelope.getEvent() == e) { // completed while handling another message
+                    envelope = pendingEnvelope;
+                    break;
+                }
+
+        if (envelope == null)
+            throw new IllegalStateException(name + " has no uncompleted event " + e);
+
+        pendingEnvelopes.remove(envelope);
+        envelope.complete(result);
     }
 }
@@ -0,0 +1,71 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the overflows of bounded mailboxes, either of a single mailbox or of a single
+ * event type - see {@link OverflowPolicy}. Used for sizing the amount of services and
+ * the capacity of their mailboxes.
+ */
+public class OverflowCounters {
+
+	// fields
+
+	private final LongAdder blocked, rejected, shed;
+
+	// constructor
+
+	public OverflowCounters() {
+
+		blocked = new LongAdder();
+		rejected = new LongAdder();
+		shed = new LongAdder();
+	}
+
+	// methods
+
+	/**
+	 * @return The amount of sends that had to wait for room in a full mailbox and then got it
+	 */
+	public long getBlocked() {
+
+		return blocked.sum();
+	}
+
+	/**
+	 * @return The amount of events that were not delivered because a mailbox was full
+	 */
+	public long getRejected() {
+
+		return rejected.sum();
+	}
+
+	/**
+	 * @return The amount of waiting events discarded to make room for newer ones
+	 */
+	public long getShed() {
+
+		return shed.sum();
+	}
+
+	void recordBlocked() {
+
+		blocked.increment();
+	}
+
+	void recordRejected() {
+
+		rejected.increment();
+	}
+
+	void recordShed() {
+
+		shed.increment();
+	}
+
+	@Override
+	public String toString() {
+
+		return "blocked=" + getBlocked() + ", rejected=" + getRejected() + ", shed=" + getShed();
+	}
+}
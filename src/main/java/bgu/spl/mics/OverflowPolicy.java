@@ -0,0 +1,15 @@
+package bgu.spl.mics;
+
+/**
+ * Enum representing what the {@link MessageBus} does with an {@link Event} sent to a micro-service
+ * whose mailbox is full:
+ * BLOCK - the sender waits, up to a timeout, for the mailbox to have room, and is rejected as in
+ * FAIL_FAST if it does not;
+ * FAIL_FAST - the event is not delivered and the sender immediately gets a future resolved to null;
+ * SHED_OLDEST - the event is delivered and the oldest event waiting in the mailbox is discarded,
+ * its future resolved to null.
+ */
+public enum OverflowPolicy {
+
+    BLOCK, FAIL_FAST, SHED_OLDEST
+}
@@ -0,0 +1,24 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Dispatches each event to the shallower mailbox, as measured by {@link Mailbox#depth()},
+ * of two subscribers chosen at random. Reads only two depths per event whatever the amount
+ * of subscribers, and still avoids the busy ones with a high probability.
+ */
+public class PowerOfTwoChoicesDispatch implements DispatchStrategy {
+
+	@Override
+	public int select(Event<?> event, Mailbox[] candidates) {
+
+		if (candidates.length == 1)
+			return 0;
+
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(candidates.length);
+		int second = (first + 1 + random.nextInt(candidates.length - 1)) % candidates.length; // a different subscriber
+
+		return candidates[second].depth() < candidates[first].depth() ? second : first;
+	}
+}
@@ -0,0 +1,20 @@
+package bgu.spl.mics;
+
+/**
+ * The message the {@link MessageBus} puts into the mailbox of a micro-service retired by
+ * {@link MessageBusImpl#retire(MicroService)} - after the events already waiting for it, so the
+ * micro-service handles them first. Once it took this message and completed all the events it
+ * took on, the micro-service terminates and unregisters like at the end of the store.
+ */
+final class Retirement implements Message {
+
+	// fields
+
+	static final Retirement INSTANCE = new Retirement(); // the message holds no state, so a single instance is shared
+
+	// constructor
+
+	private Retirement() {
+
+	}
+}
@@ -0,0 +1,434 @@
+package bgu.spl.mics;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The default {@link Mailbox} - a lock-free multi-producer/single-consumer ring buffer.
+ * Producers claim a slot with a single CAS on the producer index and then publish the
+ * message into it; the single consumer reads the slots in order and never takes a lock.
+ * <p>
+ * In order to keep the unbounded semantics of the message-bus, messages that do not fit
+ * into a full ring are spilled into a lock-free overflow queue. Once the overflow queue is
+ * in use, all producers keep spilling into it until the consumer drained it, so the
+ * messages of every single producer are always taken in the order they were put.
+ * <p>
+ * Control messages are kept in a separate lock-free queue which is always drained first.
+ * The consumer parks only when the control queue, the ring and the overflow queue are all empty.
+ * <p>
+ * The capacity of the mailbox, independent of the size of the ring, is enforced by the
+ * {@link MessageBus} according to the {@link OverflowPolicy} of each event type.
+ */
+public class RingBufferMailbox implements Mailbox {
+
+	// fields
+
+	public static final int DEFAULT_RING_CAPACITY = 256; // the default amount of slots in the ring
+
+	private final int capacity; // the amount of messages accepted before the overflow policy applies
+	private final OverflowCounters overflowCounters;
+	private final AtomicReferenceArray<Message> ring; // the slots of the ring
+	private final int mask; // the ring's capacity minus one - used for wrapping the indices
+	private final AtomicLong producerIndex; // the index of the next slot to be claimed by a producer
+	private final AtomicLong consumerIndex; // the index of the next slot to be read - written only by the consumer
+	private final ConcurrentLinkedQueue<Message> overflowQueue; // the messages that did not fit into the ring
+	private final AtomicInteger overflowCount; // the amount of messages that were spilled and not taken yet
+	private final ConcurrentLinkedQueue<Message> controlQueue; // the control lane
+	private final AtomicInteger controlCount; // the amount of messages in the control lane
+	private final AtomicInteger abandonedCount; // the amount of messages claimed by other threads and not skipped by the consumer yet
+	private final LongAdder receivedCount; // the amount of messages put so far
+	private final AtomicReference<Thread> parkedConsumer; // the consumer thread if it is parked, null otherwise
+	private volatile boolean signalled; // true if signal was called since the consumer last returned from await
+	private volatile boolean consumerBusy; // true from the moment the consumer takes a message until it polls an empty mailbox
+	private volatile boolean closed; // true once the consumer's micro-service left
+	private volatile Runnable signalListener; // run whenever the consumer would be woken, null if none
+
+	// constructors
+
+	public RingBufferMailbox() {
+
+		this(DEFAULT_RING_CAPACITY);
+	}
+
+	/**
+	 * Creates an unbounded mailbox
+	 * @param ringCapacity the minimal amount of slots in the ring - rounded up to a power of two
+	 */
+	public RingBufferMailbox(int ringCapacity) {
+
+		this(ringCapacity, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param ringCapacity the minimal amount of slots in the ring - rounded up to a power of two
+	 * @param capacity     the amount of messages the mailbox accepts before the overflow policy of the sent event applies
+	 */
+	public RingBufferMailbox(int ringCapacity, int capacity) {
+
+		if (ringCapacity < 1 || capacity < 1)
+			throw new IllegalArgumentException("The capacity of a mailbox must be positive");
+
+		int ringSize = Integer.highestOneBit(ringCapacity);
+		if (ringSize < ringCapacity)
+			ringSize <<= 1;
+
+		this.capacity = capacity;
+		overflowCounters = new OverflowCounters();
+		ring = new AtomicReferenceArray<>(ringSize);
+		mask = ringSize - 1;
+		producerIndex = new AtomicLong();
+		consumerIndex = new AtomicLong();
+		overflowQueue = new ConcurrentLinkedQueue<>();
+		overflowCount = new AtomicInteger();
+		controlQueue = new ConcurrentLinkedQueue<>();
+		controlCount = new AtomicInteger();
+		abandonedCount = new AtomicInteger();
+		receivedCount = new LongAdder();
+		parkedConsumer = new AtomicReference<>();
+	}
+
+	// methods
+
+	@Override
+	public void put(Message message) {
+
+		enqueue(message);
+		receivedCount.increment();
+		wakeConsumer();
+	}
+
+	@Override
+	public void putAll(Collection<? extends Message> messages) {
+
+		for (Message message : messages)
+			enqueue(message);
+
+		receivedCount.add(messages.size());
+
+		wakeConsumer(); // a single wakeup for the whole batch
+	}
+
+	@Override
+	public void putControl(Message message) {
+
+		controlCount.incrementAndGet();
+		controlQueue.add(message);
+		receivedCount.increment();
+		wakeConsumer();
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+
+		Message message;
+
+		while ((message = poll()) == null)
+			await();
+
+		return message;
+	}
+
+	@Override
+	public void await() throws InterruptedException {
+
+		parkedConsumer.set(Thread.currentThread());
+		if (!signalled && isEmpty()) // check again after publishing the consumer, so a concurrent put or signal is never missed
+			LockSupport.park(this);
+		parkedConsumer.set(null);
+		signalled = false;
+
+		if (Thread.interrupted())
+			throw new InterruptedException();
+	}
+
+	@Override
+	public void awaitNanos(long timeoutNanos) throws InterruptedException {
+
+		parkedConsumer.set(Thread.currentThread());
+		if (!signalled && isEmpty())
+			LockSupport.parkNanos(this, timeoutNanos);
+		parkedConsumer.set(null);
+		signalled = false;
+
+		if (Thread.interrupted())
+			throw new InterruptedException();
+	}
+
+	@Override
+	public void setSignalListener(Runnable signalListener) {
+
+		this.signalListener = signalListener;
+	}
+
+	@Override
+	public void signal() {
+
+		signalled = true;
+		wakeConsumer();
+	}
+
+	@Override
+	public Message poll() {
+
+		Message message = null;
+
+		if (controlCount.get() > 0) {
+			message = controlQueue.poll();
+			if (message != null)
+				controlCount.decrementAndGet();
+		}
+
+		if (message == null)
+			message = pollRing();
+
+		if (message == null && overflowCount.get() > 0) {
+			message = overflowQueue.poll();
+			if (message != null)
+				overflowCount.decrementAndGet();
+		}
+
+		if (consumerBusy != (message != null)) // write the volatile field only when the consumer changes its state
+			consumerBusy = message != null;
+
+		return message;
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message> target, int maxMessages) {
+
+		int drainedMessages = 0;
+		Message message;
+
+		while (drainedMessages < maxMessages && controlCount.get() > 0 && (message = controlQueue.poll()) != null) {
+			controlCount.decrementAndGet();
+			target.add(message);
+			drainedMessages++;
+		}
+
+		while (drainedMessages < maxMessages && (message = pollRing()) != null) {
+			target.add(message);
+			drainedMessages++;
+		}
+
+		// producers keep spilling while the overflow queue is in use, so it holds only messages put after those in the ring
+		while (drainedMessages < maxMessages && overflowCount.get() > 0 && (message = overflowQueue.poll()) != null) {
+			overflowCount.decrementAndGet();
+			target.add(message);
+			drainedMessages++;
+		}
+
+		if (consumerBusy != (drainedMessages > 0))
+			consumerBusy = drainedMessages > 0;
+
+		return drainedMessages;
+	}
+
+	@Override
+	public int size() {
+
+		int waitingMessages = (int) (producerIndex.get() - consumerIndex.get()) + overflowCount.get() + controlCount.get() - abandonedCount.get();
+
+		return Math.max(waitingMessages, 0); // the consumer may skip an abandoned message before it is recorded
+	}
+
+	@Override
+	public long getReceivedCount() {
+
+		return receivedCount.sum();
+	}
+
+	@Override
+	public int depth() {
+
+		return consumerBusy ? size() + 1 : size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+
+		return producerIndex.get() == consumerIndex.get() && overflowCount.get() == 0 && controlCount.get() == 0;
+	}
+
+	@Override
+	public Message peek(int index) {
+
+		long head = consumerIndex.get();
+
+		if (index < 0 || head + index >= producerIndex.get())
+			return null; // messages in the overflow queue are not peeked at
+
+		return ring.get((int) (head + index) & mask); // null if the slot was not published yet
+	}
+
+	@Override
+	public Iterator<Message> iterator() {
+
+		return new MessageIterator();
+	}
+
+	@Override
+	public void abandon() {
+
+		abandonedCount.incrementAndGet();
+	}
+
+	@Override
+	public void removeAbandoned() {
+
+		abandonedCount.decrementAndGet();
+	}
+
+	@Override
+	public int getCapacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public OverflowCounters getOverflowCounters() {
+
+		return overflowCounters;
+	}
+
+	@Override
+	public void close() {
+
+		closed = true;
+	}
+
+	@Override
+	public boolean isClosed() {
+
+		return closed;
+	}
+
+	/**
+	 * Adds {@code message} to the ring, or to the overflow queue if the ring is full
+	 * @param message The message to add
+	 */
+	private void enqueue(Message message) {
+
+		// keep spilling while there are spilled messages, so the order of each producer is kept
+		if (overflowCount.get() > 0 || !offerToRing(message)) {
+			overflowCount.incrementAndGet();
+			overflowQueue.add(message);
+		}
+	}
+
+	/**
+	 * Unparks the consumer if it is parked waiting for a message, and notifies the signal listener
+	 */
+	private void wakeConsumer() {
+
+		Thread consumer = parkedConsumer.get();
+		if (consumer != null)
+			LockSupport.unpark(consumer);
+
+		Runnable listener = signalListener;
+		if (listener != null)
+			listener.run();
+	}
+
+	/**
+	 * Claims the next free slot of the ring and publishes {@code message} into it
+	 * @param message The message to publish
+	 * @return true if the message was published, false if the ring is full
+	 */
+	private boolean offerToRing(Message message) {
+
+		long index;
+
+		do {
+			index = producerIndex.get();
+			if (index - consumerIndex.get() > mask)
+				return false; // the ring is full
+		} while (!producerIndex.compareAndSet(index, index + 1));
+
+		ring.lazySet((int) index & mask, message);
+		return true;
+	}
+
+	/**
+	 * Takes the message in the head slot of the ring - called only by the consumer
+	 * @return The message in the head slot, or null if the ring is empty
+	 */
+	private Message pollRing() {
+
+		long index = consumerIndex.get();
+
+		if (index == producerIndex.get())
+			return null;
+
+		int slot = (int) index & mask;
+		Message message;
+
+		// the slot was claimed by a producer that did not publish into it yet - it is about to
+		while ((message = ring.get(slot)) == null)
+			Thread.yield();
+
+		ring.lazySet(slot, null);
+		consumerIndex.lazySet(index + 1);
+
+		return message;
+	}
+
+	/**
+	 * Iterates over the slots of the ring published when it was created, and then over the overflow queue
+	 */
+	private final class MessageIterator implements Iterator<Message> {
+
+		private long index = consumerIndex.get(); // the next slot of the ring to read
+		private final long endIndex = producerIndex.get(); // the slots claimed after the iterator was created are not read
+		private Iterator<Message> overflowMessages; // null while the ring is read
+		private Message nextMessage; // null if not read yet
+
+		@Override
+		public boolean hasNext() {
+
+			if (nextMessage == null)
+				nextMessage = readNext();
+
+			return nextMessage != null;
+		}
+
+		@Override
+		public Message next() {
+
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			Message message = nextMessage;
+			nextMessage = null;
+			return message;
+		}
+
+		/**
+		 * @return The next published message, or null if there is none
+		 */
+		private Message readNext() {
+
+			while (overflowMessages == null) {
+
+				index = Math.max(index, consumerIndex.get()); // skip the slots the consumer took meanwhile - they may be reused
+
+				if (index >= endIndex)
+					overflowMessages = overflowQueue.iterator();
+				else {
+					Message message = ring.get((int) index++ & mask);
+					if (message != null) // not published yet, or taken meanwhile
+						return message;
+				}
+			}
+
+			return overflowMessages.hasNext() ? overflowMessages.next() : null;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package bgu.spl.mics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches the events to the subscribers in a round-robin fashion - the default {@link DispatchStrategy}.
+ * Choosing a subscriber takes a single atomic increment, and a whole batch takes a single atomic add.
+ */
+public class RoundRobinDispatch implements DispatchStrategy {
+
+	// fields
+
+	private final AtomicInteger cursor; // the round-robin position
+
+	// constructor
+
+	public RoundRobinDispatch() {
+
+		cursor = new AtomicInteger();
+	}
+
+	// methods
+
+	@Override
+	public int select(Event<?> event, Mailbox[] candidates) {
+
+		return (cursor.getAndIncrement() & Integer.MAX_VALUE) % candidates.length; // mask the sign so the cursor may overflow
+	}
+
+	@Override
+	public void selectAll(List<? extends Event<?>> events, Mailbox[] candidates, int[] targets) {
+
+		int position = cursor.getAndAdd(targets.length);
+
+		for (int i = 0; i < targets.length; i++)
+			targets[i] = ((position + i) & Integer.MAX_VALUE) % candidates.length;
+	}
+}
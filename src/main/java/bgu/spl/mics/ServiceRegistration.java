@@ -0,0 +1,197 @@
+package bgu.spl.mics;
+
+import java.util.Arrays;
+
+/**
+ * Everything the {@link MessageBusImpl} allocates to a registered {@link MicroService}:
+ * the mailbox its events are delivered to, the subscribers lists of the event types it
+ * subscribed to and its cursors into the broadcast logs it subscribed to.
+ * Unregistering a micro-service therefore touches only what it subscribed to.
+ */
+class ServiceRegistration {
+
+	// fields
+
+	private final Mailbox mailbox;
+	private final int batchSize; // the maximal amount of messages the micro-service takes at once
+	private volatile EventSubscribers[] eventSubscriptions; // replaced as a whole on every subscription
+	private volatile BroadcastLog.Cursor[] broadcastCursors; // replaced as a whole on every subscription
+	private volatile boolean waiting; // true while the micro-service waits for a message in its mailbox
+	private volatile boolean sleeping; // true while the micro-service sleeps on a virtual clock
+
+	// constructor
+
+	ServiceRegistration(Mailbox mailbox, int batchSize) {
+
+		this.mailbox = mailbox;
+		this.batchSize = batchSize;
+		eventSubscriptions = new EventSubscribers[0];
+		broadcastCursors = new BroadcastLog.Cursor[0];
+	}
+
+	// methods
+
+	/**
+	 * @return The mailbox of the micro-service
+	 */
+	Mailbox getMailbox() {
+
+		return mailbox;
+	}
+
+	/**
+	 * @return The maximal amount of messages the micro-service takes at once
+	 */
+	int getBatchSize() {
+
+		return batchSize;
+	}
+
+	/**
+	 * @param waiting true while the micro-service waits for a message in its mailbox - set only by its event loop
+	 */
+	void setWaiting(boolean waiting) {
+
+		this.waiting = waiting;
+	}
+
+	/**
+	 * @param sleeping true while the micro-service sleeps on a {@link VirtualClock}
+	 */
+	void setSleeping(boolean sleeping) {
+
+		this.sleeping = sleeping;
+	}
+
+	/**
+	 * The micro-service is quiet if it sleeps on a virtual clock, or if it waits for a message and there is none -
+	 * it is going to do nothing until another micro-service sends it a message or the clock advances
+	 * @return true if the micro-service is quiet
+	 */
+	boolean isQuiet() {
+
+		return sleeping || waiting && mailbox.isEmpty() && !hasUnreadBroadcasts();
+	}
+
+	/**
+	 * Subscribes the micro-service to an event type unless it is subscribed already
+	 * @param capableServices The subscribers of the event type
+	 */
+	synchronized void subscribe(EventSubscribers capableServices) {
+
+		EventSubscribers[] current = eventSubscriptions;
+
+		for (EventSubscribers subscription : current)
+			if (subscription == capableServices)
+				return;
+
+		capableServices.add(mailbox);
+
+		EventSubscribers[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = capableServices;
+		eventSubscriptions = updated;
+	}
+
+	/**
+	 * Subscribes the micro-service to the broadcast log {@code log} unless it is subscribed already
+	 * @param log The log of the broadcast type to subscribe to
+	 */
+	synchronized void subscribe(BroadcastLog log) {
+
+		BroadcastLog.Cursor[] current = broadcastCursors;
+
+		for (BroadcastLog.Cursor cursor : current)
+			if (cursor.getLog() == log)
+				return;
+
+		BroadcastLog.Cursor[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = log.subscribe(mailbox);
+		broadcastCursors = updated;
+	}
+
+	/**
+	 * Unsubscribes the micro-service from all the event types it subscribed to - it keeps reading its broadcasts
+	 */
+	synchronized void unsubscribeEvents() {
+
+		for (EventSubscribers subscription : eventSubscriptions)
+			subscription.remove(mailbox);
+
+		eventSubscriptions = new EventSubscribers[0];
+	}
+
+	/**
+	 * Unsubscribes the micro-service from all the event types and broadcast logs it subscribed to
+	 */
+	synchronized void unsubscribeAll() {
+
+		for (EventSubscribers subscription : eventSubscriptions)
+			subscription.remove(mailbox);
+
+		for (BroadcastLog.Cursor cursor : broadcastCursors)
+			cursor.getLog().unsubscribe(mailbox);
+
+		eventSubscriptions = new EventSubscribers[0];
+		broadcastCursors = new BroadcastLog.Cursor[0];
+	}
+
+	/**
+	 * @return true if the micro-service is subscribed to an event type whose events may be stolen
+	 */
+	boolean canSteal() {
+
+		for (EventSubscribers subscription : eventSubscriptions)
+			if (subscription.isStealingEnabled())
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Steals an event, of a type the micro-service subscribed to, from a busy sibling subscribed to the same type -
+	 * called only by its event loop, when it is idle
+	 * @return The envelope of the stolen event, or null if there is nothing to steal
+	 */
+	EventEnvelope<?> steal() {
+
+		for (EventSubscribers subscription : eventSubscriptions)
+			if (subscription.isStealingEnabled()) {
+
+				EventEnvelope<?> stolenEnvelope = subscription.steal(mailbox);
+				if (stolenEnvelope != null)
+					return stolenEnvelope;
+			}
+
+		return null;
+	}
+
+	/**
+	 * @return true if there are unread broadcasts in any of the logs the micro-service subscribed to
+	 */
+	boolean hasUnreadBroadcasts() {
+
+		for (BroadcastLog.Cursor cursor : broadcastCursors)
+			if (cursor.hasNext())
+				return true;
+
+		return false;
+	}
+
+	/**
+	 * Reads the next unread broadcast of the micro-service in the lane {@code lane} - called only by its event loop
+	 * @param lane The lane to read
+	 * @return The next broadcast, or null if all the subscribed logs of the lane were read to their end
+	 */
+	Broadcast nextBroadcast(MessageLane lane) {
+
+		for (BroadcastLog.Cursor cursor : broadcastCursors)
+			if (cursor.getLog().getLane() == lane) {
+
+				Broadcast broadcast = cursor.next();
+				if (broadcast != null)
+					return broadcast;
+			}
+
+		return null;
+	}
+}
@@ -0,0 +1,119 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The statistics of a single {@link MicroService} - for each message type it handles, the amount of messages,
+ * a histogram of the time its callback ran and a histogram of the time the messages waited for the micro-service.
+ * The recorders of the types are kept in an array indexed by the dense IDs of {@link MessageTypeIds}, so recording
+ * a message takes no lookup and allocates nothing once the first message of its type was recorded.
+ * <p>
+ * Recorded only by the event loop of the micro-service, and read through {@link MessageBusMXBean} by any thread.
+ */
+final class ServiceStatistics {
+
+	// fields
+
+	private final String name;
+	private volatile TypeRecorder[] typeRecorders; // indexed by the dense IDs of the message types - replaced as a whole when it grows
+
+	// constructor
+
+	ServiceStatistics(String name) {
+
+		this.name = name;
+		typeRecorders = new TypeRecorder[0];
+	}
+
+	// methods
+
+	/**
+	 * Records a handled message - may be called only by the event loop of the micro-service
+	 * @param typeId       The dense ID of the message type
+	 * @param type         The message type
+	 * @param waitNanos    The time from sending the message to calling its callback, or a negative value if it is unknown
+	 * @param callbackNanos The time the callback of the message ran
+	 */
+	void record(int typeId, Class<?> type, long waitNanos, long callbackNanos) {
+
+		TypeRecorder[] current = typeRecorders;
+		TypeRecorder typeRecorder = typeId < current.length ? current[typeId] : null;
+
+		if (typeRecorder == null)
+			typeRecorder = addTypeRecorder(typeId, type);
+
+		typeRecorder.callbackTimes.record(callbackNanos);
+		if (waitNanos >= 0)
+			typeRecorder.waitTimes.record(waitNanos);
+	}
+
+	/**
+	 * @return The name of the micro-service
+	 */
+	String getName() {
+
+		return name;
+	}
+
+	/**
+	 * @return The amount of messages the micro-service handled so far - its callbacks of events and broadcasts
+	 */
+	long getMessagesHandled() {
+
+		long handledMessages = 0;
+
+		for (TypeRecorder typeRecorder : typeRecorders)
+			if (typeRecorder != null)
+				handledMessages += typeRecorder.callbackTimes.getCount();
+
+		return handledMessages;
+	}
+
+	/**
+	 * @return The statistics of each message type the micro-service handled
+	 */
+	List<MessageTypeStatistics> getMessageTypeStatistics() {
+
+		List<MessageTypeStatistics> statistics = new ArrayList<>();
+
+		for (TypeRecorder typeRecorder : typeRecorders)
+			if (typeRecorder != null)
+				statistics.add(new MessageTypeStatistics(typeRecorder.typeName, typeRecorder.callbackTimes, typeRecorder.waitTimes));
+
+		return statistics;
+	}
+
+	/**
+	 * Creates the recorder of a message type recorded for the first time
+	 * @param typeId The dense ID of the message type
+	 * @param type   The message type
+	 * @return The new recorder
+	 */
+	private TypeRecorder addTypeRecorder(int typeId, Class<?> type) {
+
+		TypeRecorder[] updated = Arrays.copyOf(typeRecorders, Math.max(typeId + 1, typeRecorders.length));
+		TypeRecorder typeRecorder = new TypeRecorder(type.getSimpleName());
+		updated[typeId] = typeRecorder;
+		typeRecorders = updated;
+
+		return typeRecorder;
+	}
+
+	/**
+	 * The histograms of a single message type
+	 */
+	private static final class TypeRecorder {
+
+		private final String typeName;
+		private final LatencyHistogram callbackTimes, waitTimes;
+
+		private TypeRecorder(String typeName) {
+
+			this.typeName = typeName;
+			callbackTimes = new LatencyHistogram();
+			waitTimes = new LatencyHistogram();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package bgu.spl.mics;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Scales a group of interchangeable micro-services - all subscribed to the same {@link Event} type - at runtime.
+ * On every {@link #sample()} the supervisor looks at the depth of the group's mailboxes and at the latency of the
+ * events of the type completed since the previous sample, and starts or retires a single micro-service within the
+ * configured bounds. A started micro-service joins the dispatch of the event type once it subscribed to it, and a
+ * retired one is unsubscribed right away and leaves through {@link MessageBusImpl#retire(MicroService)} once it
+ * handled the events it took on.
+ * <p>
+ * Sampling is driven from outside - e.g. by a micro-service on every tick of the store - so the supervisor
+ * never starts a micro-service after the application stopped caring for new ones.
+ */
+public class ServiceSupervisor {
+
+	// fields
+
+	public static final int DEFAULT_DEPTH_TARGET = 4; // the default amount of waiting messages per micro-service above which the group grows
+
+	private final EventSubscribers subscribers; // the subscribers of the event type of the group - and the statistics of its events
+	private final IntFunction<? extends MicroService> serviceFactory; // creates the micro-service numbered by its argument
+	private final Consumer<? super MicroService> serviceStarter; // starts running a created micro-service
+	private final int minInstances, maxInstances;
+	private final Deque<MicroService> instances; // the running micro-services of the group, the most recently started last
+	private int nextNumber; // the number of the next micro-service to be created
+	private int depthTarget; // the amount of waiting messages per micro-service above which the group grows
+	private long latencyTargetNanos; // the mean latency of the events above which the group grows
+	private long lastCompletedEvents, lastCompletionNanos; // the statistics of the event type at the previous sample
+
+	// constructor
+
+	/**
+	 * @param eventType      The event type handled by the group
+	 * @param serviceFactory Creates a new micro-service of the group - called with 1, 2, 3 and so on
+	 * @param serviceStarter Starts running a micro-service created by {@code serviceFactory}, e.g. on an executor service
+	 * @param minInstances   The least amount of micro-services of the group - at least 1
+	 * @param maxInstances   The largest amount of micro-services of the group
+	 */
+	public ServiceSupervisor(Class<? extends Event> eventType, IntFunction<? extends MicroService> serviceFactory,
+							 Consumer<? super MicroService> serviceStarter, int minInstances, int maxInstances) {
+
+		if (minInstances < 1 || maxInstances < minInstances)
+			throw new IllegalArgumentException("The bounds of a supervised group must satisfy 1 <= min <= max");
+
+		subscribers = MessageBusImpl.getInstance().subscribersOf(eventType);
+		this.serviceFactory = serviceFactory;
+		this.serviceStarter = serviceStarter;
+		this.minInstances = minInstances;
+		this.maxInstances = maxInstances;
+		instances = new ArrayDeque<>();
+		nextNumber = 1;
+		depthTarget = DEFAULT_DEPTH_TARGET;
+		latencyTargetNanos = Long.MAX_VALUE; // the latency is not looked at by default
+	}
+
+	// methods
+
+	/**
+	 * Sets the load above which the group grows - it shrinks once the load is far below it
+	 * @param depthTarget   The amount of waiting messages per micro-service
+	 * @param latencyTarget The mean time from sending an event of the type to completing it
+	 * @param unit          The time unit of {@code latencyTarget}
+	 */
+	public synchronized void setTargets(int depthTarget, long latencyTarget, TimeUnit unit) {
+
+		if (depthTarget < 1)
+			throw new IllegalArgumentException("The depth target of a supervised group must be positive");
+
+		this.depthTarget = depthTarget;
+		latencyTargetNanos = unit.toNanos(latencyTarget);
+	}
+
+	/**
+	 * Starts the first micro-services of the group
+	 * @param initialInstances The amount of micro-services to start - clamped to the bounds of the group
+	 */
+	public synchronized void start(int initialInstances) {
+
+		int clampedInstances = Math.max(minInstances, Math.min(maxInstances, initialInstances));
+
+		while (instances.size() < clampedInstances)
+			startInstance();
+
+		lastCompletedEvents = subscribers.getCompletedEvents();
+		lastCompletionNanos = subscribers.getCompletionNanos();
+	}
+
+	/**
+	 * Samples the load of the group, and starts or retires a single micro-service if it is out of the targets
+	 */
+	public synchronized void sample() {
+
+		long completedEvents = subscribers.getCompletedEvents(), completionNanos = subscribers.getCompletionNanos();
+		long meanLatencyNanos = completedEvents == lastCompletedEvents ? 0 : (completionNanos - lastCompletionNanos) / (completedEvents - lastCompletedEvents);
+		lastCompletedEvents = completedEvents;
+		lastCompletionNanos = completionNanos;
+
+		int totalDepth = subscribers.getTotalDepth();
+		int runningInstances = instances.size();
+
+		if (runningInstances < maxInstances && (totalDepth > depthTarget * runningInstances || meanLatencyNanos > latencyTargetNanos))
+			startInstance();
+		else if (runningInstances > minInstances && totalDepth * 2 < depthTarget * (runningInstances - 1) && meanLatencyNanos * 2 < latencyTargetNanos)
+			MessageBusImpl.getInstance().retire(instances.pollLast()); // the load fits well into one micro-service less
+	}
+
+	/**
+	 * @return The amount of running micro-services of the group, including those starting
+	 */
+	public synchronized int getInstanceCount() {
+
+		return instances.size();
+	}
+
+	/**
+	 * Creates and starts a new micro-service of the group
+	 */
+	private void startInstance() {
+
+		MicroService instance = serviceFactory.apply(nextNumber++);
+		instances.addLast(instance);
+		serviceStarter.accept(instance);
+	}
+}
@@ -0,0 +1,111 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Waits for a group of micro-services to leave - the whole store, run on any amount of executor services.
+ * Every tracked micro-service is counted down as soon as its event loop ends, right after it unregistered
+ * from the message-bus, and the waiting thread is released once the last one left - however early that is.
+ * <p>
+ * Micro-services still running once the wait timed out can be interrupted, which makes their event loops
+ * terminate the next time they wait for a message, and are reported by name.
+ */
+public class ShutdownCoordinator {
+
+	// fields
+
+	private final AtomicLong runningServices; // the tracked micro-services that did not leave yet, plus one for the coordinator itself - unlike the parties of a phaser, never limited
+	private final CountDownLatch allLeft; // released once the count of the running services reached zero
+	private final ConcurrentHashMap<MicroService, Thread> serviceThreads; // the tracked micro-services that started running and did not leave yet, and their threads
+
+	// constructor
+
+	public ShutdownCoordinator() {
+
+		runningServices = new AtomicLong(1);
+		allLeft = new CountDownLatch(1);
+		serviceThreads = new ConcurrentHashMap<>();
+	}
+
+	// methods
+
+	/**
+	 * Tracks the micro-service {@code m} from now on - must be called before it starts running
+	 * @param m The micro-service to track
+	 * @return The task to run instead of {@code m} - runs its event loop and counts it down once it ended
+	 */
+	public Runnable track(MicroService m) {
+
+		runningServices.incrementAndGet();
+
+		return () -> {
+
+			serviceThreads.put(m, Thread.currentThread());
+
+			try {
+				m.run();
+			} finally {
+				serviceThreads.remove(m);
+				countDown();
+			}
+		};
+	}
+
+	/**
+	 * Waits until all the tracked micro-services left. May be called only once, after all of them were tracked.
+	 * @param timeout The maximal time to wait
+	 * @param unit    The time unit of {@code timeout}
+	 * @return true if all the tracked micro-services left, false if the time ran out
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+		countDown(); // the coordinator's own count - no micro-service is tracked from now on
+
+		return allLeft.await(timeout, unit);
+	}
+
+	/**
+	 * Counts down a micro-service that left, or the coordinator itself, and releases the waiting thread once none is left
+	 */
+	private void countDown() {
+
+		if (runningServices.decrementAndGet() == 0)
+			allLeft.countDown();
+	}
+
+	/**
+	 * @return The names of the tracked micro-services still running
+	 */
+	public List<String> getRemainingServices() {
+
+		List<String> remainingServices = new ArrayList<>();
+
+		for (MicroService microService : serviceThreads.keySet())
+			remainingServices.add(microService.getName());
+
+		return remainingServices;
+	}
+
+	/**
+	 * Interrupts the threads of the tracked micro-services still running - stuck in a callback or waiting for a message
+	 * @return The names of the interrupted micro-services
+	 */
+	public List<String> interruptRemaining() {
+
+		List<String> remainingServices = new ArrayList<>();
+
+		serviceThreads.forEach((microService, serviceThread) -> {
+
+			remainingServices.add(microService.getName());
+			serviceThread.interrupt();
+		});
+
+		return remainingServices;
+	}
+}
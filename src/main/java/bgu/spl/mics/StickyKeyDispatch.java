@@ -0,0 +1,44 @@
+package bgu.spl.mics;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Dispatches all the events with the same key to the same subscriber, as long as the
+ * subscribers of the event type do not change. Events without a key are dispatched in a
+ * round-robin fashion.
+ */
+public class StickyKeyDispatch implements DispatchStrategy {
+
+	// fields
+
+	private final Function<? super Event<?>, ?> keyExtractor; // extracts the key of an event - may return null
+	private final RoundRobinDispatch roundRobinDispatch; // dispatches the events without a key
+
+	// constructor
+
+	/**
+	 * @param keyExtractor Extracts the key of an event, or returns null if the event has no key
+	 */
+	public StickyKeyDispatch(Function<? super Event<?>, ?> keyExtractor) {
+
+		this.keyExtractor = Objects.requireNonNull(keyExtractor);
+		roundRobinDispatch = new RoundRobinDispatch();
+	}
+
+	// methods
+
+	@Override
+	public int select(Event<?> event, Mailbox[] candidates) {
+
+		Object key = keyExtractor.apply(event);
+
+		if (key == null)
+			return roundRobinDispatch.select(event, candidates);
+
+		int hash = key.hashCode();
+		hash ^= hash >>> 16; // spread the high bits, as in HashMap
+
+		return (hash & Integer.MAX_VALUE) % candidates.length;
+	}
+}
@@ -0,0 +1,203 @@
+package bgu.spl.mics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Runs numbered ticks at a fixed rate on the calling thread, timed by {@link System#nanoTime()}. The deadline
+ * of every tick is counted from the start of the run rather than from the end of the tick before it, so the
+ * time a tick takes never shifts the ticks after it, and the ticks do not drift.
+ * <p>
+ * A tick that ran past the deadline of the next tick overran. The ticks due meanwhile are then either run
+ * back to back until the scheduler caught up - {@link OverrunPolicy#CATCH_UP} - or skipped, running only the
+ * latest of them right away - {@link OverrunPolicy#SKIP}. The last tick ends the run, so it is never skipped, and
+ * neither is any tick the caller says must run - the scheduler knows nothing of what the ticks mean. The jitter and the
+ * overruns of the ticks are published through {@link TickSchedulerMXBean}, so the period can be sized by them.
+ */
+public class TickScheduler implements TickSchedulerMXBean {
+
+	// fields
+
+	private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(100); // the end of the wait spent yielding rather than parking, which may oversleep
+
+	private final long periodNanos;
+	private final OverrunPolicy overrunPolicy;
+	private final LatencyHistogram jitterTimes, overrunTimes; // recorded only by the thread running the ticks
+	private volatile long ticksRun, ticksSkipped; // written only by the thread running the ticks
+
+	// constructor
+
+	/**
+	 * @param period        The period of the ticks
+	 * @param unit          The time unit of {@code period}
+	 * @param overrunPolicy What is done once a tick overran
+	 */
+	public TickScheduler(long period, TimeUnit unit, OverrunPolicy overrunPolicy) {
+
+		if (period <= 0)
+			throw new IllegalArgumentException("The period of the ticks must be positive");
+
+		periodNanos = unit.toNanos(period);
+		this.overrunPolicy = overrunPolicy;
+		jitterTimes = new LatencyHistogram();
+		overrunTimes = new LatencyHistogram();
+	}
+
+	// methods
+
+	/**
+	 * Runs the ticks {@code firstTick} to {@code lastTick}, any of which may be skipped by the overrun policy but the last one
+	 * @param firstTick The number of the first tick
+	 * @param lastTick  The number of the last tick
+	 * @param tickTask  Runs a tick - called with its number
+	 * @see #run(int, int, IntPredicate, IntConsumer)
+	 */
+	public void run(int firstTick, int lastTick, IntConsumer tickTask) {
+
+		run(firstTick, lastTick, tick -> false, tickTask);
+	}
+
+	/**
+	 * Runs the ticks {@code firstTick} to {@code lastTick} - the first one right away, and each of the others a period
+	 * after the one before it - and returns once the last tick ran. Registers the scheduler's management bean first.
+	 * @param firstTick The number of the first tick
+	 * @param lastTick  The number of the last tick
+	 * @param mustRun   Tells the ticks the {@link OverrunPolicy#SKIP} policy may never skip - called with their numbers
+	 * @param tickTask  Runs a tick - called with its number
+	 */
+	public void run(int firstTick, int lastTick, IntPredicate mustRun, IntConsumer tickTask) {
+
+		MessageBusImpl.registerMBean(this, TickSchedulerMXBean.class, "bgu.spl.mics:type=TickScheduler");
+
+		long startNanos = System.nanoTime();
+
+		for (int tick = firstTick; tick <= lastTick; ) {
+
+			long deadlineNanos = startNanos + (tick - firstTick) * periodNanos;
+			long startedNanos = awaitDeadline(deadlineNanos);
+
+			jitterTimes.record(startedNanos - deadlineNanos);
+			tickTask.accept(tick);
+			ticksRun++;
+
+			if (tick == lastTick)
+				return;
+
+			long overrunNanos = System.nanoTime() - (deadlineNanos + periodNanos); // how late the next tick is already
+
+			if (overrunNanos <= 0) {
+				tick++;
+				continue;
+			}
+
+			overrunTimes.record(overrunNanos);
+
+			int nextTick = tick + 1;
+			if (overrunPolicy == OverrunPolicy.SKIP) { // run the latest of the ticks due - the deadline of the one after it did not pass yet
+
+				int latestTick = (int) Math.min(lastTick, nextTick + overrunNanos / periodNanos);
+				while (nextTick < latestTick && !mustRun.test(nextTick)) // but stop at the first tick due that must run
+					nextTick++;
+			}
+
+			ticksSkipped += nextTick - tick - 1;
+			tick = nextTick;
+		}
+	}
+
+	/**
+	 * Waits until {@code deadlineNanos} - parks until just before it, and yields the rest of the way
+	 * @param deadlineNanos The deadline, in the time of {@link System#nanoTime()}
+	 * @return The time the wait ended
+	 */
+	private static long awaitDeadline(long deadlineNanos) {
+
+		long nowNanos;
+
+		while ((nowNanos = System.nanoTime()) - deadlineNanos < 0)
+			if (deadlineNanos - nowNanos > SPIN_NANOS)
+				LockSupport.parkNanos(deadlineNanos - nowNanos - SPIN_NANOS);
+			else
+				Thread.yield();
+
+		return nowNanos;
+	}
+
+	@Override
+	public long getPeriod() {
+
+		return periodNanos;
+	}
+
+	@Override
+	public String getOverrunPolicy() {
+
+		return overrunPolicy.name();
+	}
+
+	@Override
+	public long getTicksRun() {
+
+		return ticksRun;
+	}
+
+	@Override
+	public long getOverruns() {
+
+		return overrunTimes.getCount();
+	}
+
+	@Override
+	public long getTicksSkipped() {
+
+		return ticksSkipped;
+	}
+
+	@Override
+	public long getJitterMean() {
+
+		return jitterTimes.getMeanNanos();
+	}
+
+	@Override
+	public long getJitterP99() {
+
+		return jitterTimes.getPercentileNanos(99);
+	}
+
+	@Override
+	public long[] getJitterHistogram() {
+
+		return jitterTimes.getBuckets();
+	}
+
+	@Override
+	public long getOverrunMean() {
+
+		return overrunTimes.getMeanNanos();
+	}
+
+	@Override
+	public long getOverrunP99() {
+
+		return overrunTimes.getPercentileNanos(99);
+	}
+
+	@Override
+	public long[] getOverrunHistogram() {
+
+		return overrunTimes.getBuckets();
+	}
+
+	/**
+	 * What a {@link TickScheduler} does once a tick ran past the deadline of the next tick:
+	 * CATCH_UP - the ticks due meanwhile are all run, back to back, until the scheduler caught up.
+	 * SKIP - the ticks due meanwhile are skipped but the latest of them, which is run right away.
+	 */
+	public enum OverrunPolicy {
+
+		CATCH_UP, SKIP
+	}
+}
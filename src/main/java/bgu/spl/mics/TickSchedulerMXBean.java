@@ -0,0 +1,67 @@
+package bgu.spl.mics;
+
+/**
+ * The management interface of a {@link TickScheduler} - registered in the platform MBean server as
+ * {@code bgu.spl.mics:type=TickScheduler} once it starts running. All the durations are in nanoseconds,
+ * and the percentiles and histograms are those of {@link MessageTypeStatistics}.
+ * <p>
+ * The jitter of a tick is how late it started after its deadline, and the overrun of a tick is how late
+ * the tick after it was because of it - the time the tick ran past the deadline of the next one.
+ */
+public interface TickSchedulerMXBean {
+
+    /**
+     * @return The period of the ticks
+     */
+    long getPeriod();
+
+    /**
+     * @return What is done once a tick overran - CATCH_UP or SKIP
+     */
+    String getOverrunPolicy();
+
+    /**
+     * @return The amount of ticks run so far
+     */
+    long getTicksRun();
+
+    /**
+     * @return The amount of ticks that ran past the deadline of the next tick so far
+     */
+    long getOverruns();
+
+    /**
+     * @return The amount of ticks skipped so far - always 0 under the CATCH_UP policy, and never the last two ticks
+     */
+    long getTicksSkipped();
+
+    /**
+     * @return The mean jitter of the ticks
+     */
+    long getJitterMean();
+
+    /**
+     * @return The 99th percentile of the jitter of the ticks
+     */
+    long getJitterP99();
+
+    /**
+     * @return The histogram of the jitter of the ticks
+     */
+    long[] getJitterHistogram();
+
+    /**
+     * @return The mean overrun of the ticks that overran
+     */
+    long getOverrunMean();
+
+    /**
+     * @return The 99th percentile of the overrun of the ticks that overran
+     */
+    long getOverrunP99();
+
+    /**
+     * @return The histogram of the overrun of the ticks that overran
+     */
+    long[] getOverrunHistogram();
+}
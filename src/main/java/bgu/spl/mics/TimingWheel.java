@@ -0,0 +1,180 @@
+package bgu.spl.mics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A hashed timing wheel - a single timer thread resolving the futures of any amount of pending timeouts, so a
+ * micro-service waiting for some time to pass does not hold its thread meanwhile: it registers a continuation
+ * on the future of the timeout by {@link MicroService#whenResolved(Future, Callback)} and goes on with its messages.
+ * <p>
+ * The wheel is a ring of buckets, each holding the timeouts whose deadline falls on its ticks. The timer thread
+ * wakes up on every tick and resolves the due timeouts of the current bucket only, so scheduling and expiring
+ * a timeout take constant time however many are pending - at the price of resolving each timeout up to a tick late.
+ * Timeouts are scheduled by any thread into a queue, and moved into their buckets only by the timer thread.
+ * <p>
+ * While a {@link VirtualClock} is active, the timeouts are scheduled on it instead, in simulated time.
+ */
+public class TimingWheel {
+
+	// fields
+
+	public static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // the length of a tick of the shared wheel
+	public static final int DEFAULT_WHEEL_SIZE = 512; // the amount of buckets of the shared wheel - a whole round of it is about half a second
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask; // the wheel size is a power of two - the bucket of a tick is its low bits
+	private final ConcurrentLinkedQueue<Timeout> scheduledTimeouts; // timeouts not moved into their buckets yet
+	private final AtomicBoolean started;
+	private final long startNanos; // the deadlines are kept relative to it, so they never overflow
+
+	// thread-safe singleton implementation
+	private static class TimingWheelSingletonHolder {
+
+		private static TimingWheel timingWheelInstance = new TimingWheel(DEFAULT_TICK_NANOS, TimeUnit.NANOSECONDS, DEFAULT_WHEEL_SIZE);
+	}
+
+	// constructor
+
+	/**
+	 * @param tickDuration The length of a tick - the precision of the timeouts
+	 * @param unit         The time unit of {@code tickDuration}
+	 * @param wheelSize    The amount of buckets - rounded up to a power of two
+	 */
+	public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize) {
+
+		if (tickDuration <= 0 || wheelSize <= 0 || wheelSize > 1 << 30)
+			throw new IllegalArgumentException("The tick duration of a timing wheel must be positive, and its size between 1 and 2^30");
+
+		int roundedWheelSize = 1;
+		while (roundedWheelSize < wheelSize)
+			roundedWheelSize <<= 1;
+
+		tickNanos = unit.toNanos(tickDuration);
+		wheel = new Bucket[roundedWheelSize];
+		for (int i = 0; i < wheel.length; i++)
+			wheel[i] = new Bucket();
+		mask = wheel.length - 1;
+		scheduledTimeouts = new ConcurrentLinkedQueue<>();
+		started = new AtomicBoolean();
+		startNanos = System.nanoTime();
+	}
+
+	// methods
+
+	/**
+	 * Retrieves the timing wheel shared by the whole store
+	 */
+	public static TimingWheel getInstance() {
+
+		return TimingWheelSingletonHolder.timingWheelInstance;
+	}
+
+	/**
+	 * Schedules a timeout - on the active {@link VirtualClock} if there is one. Starts the timer thread on the first call.
+	 * @param delay The time until the timeout
+	 * @param unit  The time unit of {@code delay}
+	 * @return A future resolved with null once the delay passed
+	 */
+	public Future<Void> schedule(long delay, TimeUnit unit) {
+
+		VirtualClock virtualClock = VirtualClock.getActive();
+
+		if (virtualClock != null)
+			return virtualClock.schedule(unit.toMillis(delay));
+
+		if (!started.get() && started.compareAndSet(false, true)) {
+
+			Thread timerThread = new Thread(this::runTimer, "TimingWheel");
+			timerThread.setDaemon(true); // the pending timeouts do not keep the store running
+			timerThread.start();
+		}
+
+		Timeout timeout = new Timeout(System.nanoTime() - startNanos + Math.max(0, unit.toNanos(delay)));
+		scheduledTimeouts.add(timeout);
+
+		return timeout.future;
+	}
+
+	/**
+	 * The loop of the timer thread - waits for every tick, and resolves the due timeouts of its bucket
+	 */
+	private void runTimer() {
+
+		for (long tick = 0; ; tick++) {
+
+			long tickDeadline = tickNanos * (tick + 1); // the end of the tick, relative to the start of the wheel
+			long remainingNanos;
+
+			while ((remainingNanos = tickDeadline - (System.nanoTime() - startNanos)) > 0)
+				LockSupport.parkNanos(this, remainingNanos);
+
+			moveScheduledTimeouts(tick);
+			wheel[(int) (tick & mask)].expire(tickDeadline);
+		}
+	}
+
+	/**
+	 * Moves the newly scheduled timeouts into their buckets - a timeout whose deadline passed goes into the current bucket
+	 * @param tick The current tick
+	 */
+	private void moveScheduledTimeouts(long tick) {
+
+		Timeout timeout;
+
+		while ((timeout = scheduledTimeouts.poll()) != null) {
+
+			long deadlineTick = Math.max(timeout.deadlineNanos / tickNanos, tick);
+			timeout.remainingRounds = (deadlineTick - tick) / wheel.length;
+			wheel[(int) (deadlineTick & mask)].timeouts.add(timeout);
+		}
+	}
+
+	/**
+	 * A pending timeout
+	 */
+	private static final class Timeout {
+
+		private final long deadlineNanos; // relative to the start of the wheel
+		private final Future<Void> future;
+		private long remainingRounds; // the whole rounds of the wheel left until the deadline - touched only by the timer thread
+
+		private Timeout(long deadlineNanos) {
+
+			this.deadlineNanos = deadlineNanos;
+			future = new Future<>();
+		}
+	}
+
+	/**
+	 * The timeouts of the ticks falling on a single slot of the wheel - touched only by the timer thread
+	 */
+	private static final class Bucket {
+
+		private final List<Timeout> timeouts = new ArrayList<>();
+
+		/**
+		 * Resolves the timeouts due by the end of the current tick, and counts down a round of the rest
+		 * @param tickDeadline The end of the current tick, relative to the start of the wheel
+		 */
+		private void expire(long tickDeadline) {
+
+			int keptTimeouts = 0;
+
+			for (Timeout timeout : timeouts)
+				if (timeout.remainingRounds <= 0 && timeout.deadlineNanos <= tickDeadline)
+					timeout.future.resolve(null);
+				else {
+					timeout.remainingRounds--;
+					timeouts.set(keptTimeouts++, timeout);
+				}
+
+			timeouts.subList(keptTimeouts, timeouts.size()).clear();
+		}
+	}
+}
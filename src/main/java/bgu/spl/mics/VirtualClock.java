@@ -0,0 +1,253 @@
+package bgu.spl.mics;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A discrete-event clock for running micro-services in simulated time. The time only advances when the driver of
+ * the clock - typically the micro-service sending the ticks - asks it to, and the driver waits for quiescence in
+ * between: the moment every other registered micro-service is either waiting for a message with nothing left to
+ * read, or sleeping on this clock. A run therefore takes as long as its work, whatever its simulated duration.
+ * <p>
+ * Sleeping on the clock, by {@link #sleep(long)}, wakes the sleeper once the clock advanced past its wakeup time;
+ * the sleepers are woken one at a time in the order of their wakeup times, each followed by quiescence.
+ * The active clock is available to code without a reference to it through {@link #getActive()}.
+ * <p>
+ * Quiescence can be detected only for micro-services running on a thread of their own.
+ */
+public class VirtualClock {
+
+	// fields
+
+	private static final int QUIESCENCE_SPINS = 64; // the checks of quiescence before the driver starts to park between checks
+	private static final long QUIESCENCE_PARK_NANOS = 20_000; // the pause of the driver between the later checks of quiescence
+
+	private static volatile VirtualClock activeClock; // the clock micro-services sleep on, null if they sleep in wall-clock time
+
+	private final MessageBusImpl messageBus;
+	private final PriorityQueue<Sleeper> sleepers; // ordered by wakeup time, and by arrival for equal wakeup times - guarded by the clock
+	private volatile long now; // the simulated time in milliseconds
+	private long nextSleeperNumber; // keeps the sleepers of equal wakeup times in their order of arrival - guarded by the clock
+	private boolean closed; // guarded by the clock
+
+	// constructor
+
+	public VirtualClock() {
+
+		messageBus = MessageBusImpl.getInstance();
+		sleepers = new PriorityQueue<>();
+	}
+
+	// methods
+
+	/**
+	 * @return The clock micro-services sleep on, or null if they sleep in wall-clock time
+	 */
+	public static VirtualClock getActive() {
+
+		return activeClock;
+	}
+
+	/**
+	 * Makes this clock the one micro-services sleep on, until it is closed
+	 */
+	public void activate() {
+
+		activeClock = this;
+	}
+
+	/**
+	 * @return The simulated time in milliseconds
+	 */
+	public long now() {
+
+		return now;
+	}
+
+	/**
+	 * Sleeps until the clock advanced by {@code millis} milliseconds. A micro-service sleeping on the clock
+	 * counts as quiet, so the driver advances the clock while it sleeps. Returns at once if the clock is closed.
+	 * @param millis The simulated time to sleep
+	 * @throws InterruptedException if interrupted while sleeping
+	 */
+	public void sleep(long millis) throws InterruptedException {
+
+		ServiceRegistration registration = messageBus.currentRegistration(); // null on a thread that runs no micro-service
+		Sleeper sleeper;
+
+		synchronized (this) {
+
+			if (closed)
+				return;
+
+			sleeper = new Sleeper(Thread.currentThread(), registration, now + Math.max(0, millis), nextSleeperNumber++);
+			sleepers.add(sleeper);
+			if (registration != null)
+				registration.setSleeping(true); // only once the sleeper can be found by the driver
+		}
+
+		while (!sleeper.woken) {
+
+			LockSupport.park(this);
+
+			if (Thread.interrupted()) {
+
+				synchronized (this) {
+					if (!sleeper.woken && sleepers.remove(sleeper) && registration != null)
+						registration.setSleeping(false);
+				}
+
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Schedules a timeout in simulated time - resolved, on the thread of the driver, once the clock advanced by
+	 * {@code millis} milliseconds, in order with the sleepers, or when the clock is closed
+	 * @param millis The simulated time until the timeout
+	 * @return A future resolved with null at the timeout
+	 */
+	public Future<Void> schedule(long millis) {
+
+		Future<Void> future = new Future<>();
+
+		synchronized (this) {
+
+			if (!closed) {
+				sleepers.add(new Sleeper(future, now + Math.max(0, millis), nextSleeperNumber++));
+				return future;
+			}
+		}
+
+		future.resolve(null);
+
+		return future;
+	}
+
+	/**
+	 * Waits until {@code services} micro-services besides the driver registered, and then until they are all quiet -
+	 * done by the driver before it starts advancing the clock, so none of them misses the beginning of the run
+	 * @param services The amount of micro-services taking part in the run besides the driver
+	 * @param driver   The micro-service driving the clock, or null if it is driven by another thread
+	 */
+	public void awaitServices(int services, MicroService driver) {
+
+		int ownRegistration = driver == null ? 0 : 1;
+
+		while (messageBus.registeredServices() - ownRegistration < services)
+			LockSupport.parkNanos(this, QUIESCENCE_PARK_NANOS);
+
+		awaitQuiescence(driver);
+	}
+
+	/**
+	 * Waits until every registered micro-service but the driver is quiet - waiting for a message with nothing
+	 * left to read, or sleeping on the clock. Called only by the driver.
+	 * @param driver The micro-service driving the clock, or null if it is driven by another thread
+	 */
+	public void awaitQuiescence(MicroService driver) {
+
+		for (int checks = 0; !messageBus.isQuiescent(driver); checks++)
+			if (checks < QUIESCENCE_SPINS)
+				Thread.yield();
+			else
+				LockSupport.parkNanos(this, QUIESCENCE_PARK_NANOS);
+	}
+
+	/**
+	 * Advances the clock to {@code time}, waking the sleepers whose wakeup time is up to it one at a time
+	 * in the order of their wakeup times, and waiting for quiescence after each of them. Called only by the driver.
+	 * @param time   The simulated time in milliseconds to advance to - nothing happens if it is not later than now
+	 * @param driver The micro-service driving the clock, or null if it is driven by another thread
+	 */
+	public void advanceTo(long time, MicroService driver) {
+
+		while (true) {
+
+			synchronized (this) {
+
+				Sleeper nextSleeper = sleepers.peek();
+
+				if (nextSleeper == null || nextSleeper.wakeupTime > time) {
+					now = Math.max(now, time);
+					return;
+				}
+
+				sleepers.poll();
+				now = Math.max(now, nextSleeper.wakeupTime);
+				nextSleeper.wake();
+			}
+
+			awaitQuiescence(driver);
+		}
+	}
+
+	/**
+	 * Closes the clock - wakes all the sleepers, and lets the later sleeps return at once. Deactivates the clock if it is active.
+	 */
+	public synchronized void close() {
+
+		closed = true;
+
+		Sleeper sleeper;
+		while ((sleeper = sleepers.poll()) != null)
+			sleeper.wake();
+
+		if (activeClock == this)
+			activeClock = null;
+	}
+
+	/**
+	 * A thread sleeping on the clock, or a scheduled timeout
+	 */
+	private static final class Sleeper implements Comparable<Sleeper> {
+
+		private final Thread thread; // null for a timeout
+		private final ServiceRegistration registration; // the registration of the sleeping micro-service, null if the thread runs none
+		private final Future<Void> timeout; // null for a sleeping thread
+		private final long wakeupTime, number;
+		private volatile boolean woken;
+
+		private Sleeper(Thread thread, ServiceRegistration registration, long wakeupTime, long number) {
+
+			this.thread = thread;
+			this.registration = registration;
+			timeout = null;
+			this.wakeupTime = wakeupTime;
+			this.number = number;
+		}
+
+		private Sleeper(Future<Void> timeout, long wakeupTime, long number) {
+
+			thread = null;
+			registration = null;
+			this.timeout = timeout;
+			this.wakeupTime = wakeupTime;
+			this.number = number;
+		}
+
+		/**
+		 * Wakes the sleeping thread - its micro-service stops counting as quiet right away, before it even runs -
+		 * or resolves the timeout, which sends the continuations waiting for it before the driver looks for quiescence
+		 */
+		private void wake() {
+
+			if (registration != null)
+				registration.setSleeping(false);
+
+			woken = true;
+
+			if (timeout != null)
+				timeout.resolve(null);
+			else
+				LockSupport.unpark(thread);
+		}
+
+		@Override
+		public int compareTo(Sleeper other) {
+
+			return wakeupTime != other.wakeupTime ? Long.compare(wakeupTime, other.wakeupTime) : Long.compare(number, other.number);
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package bgu.spl.mics.application;
 
+import bgu.spl.mics.*;
+import bgu.spl.mics.application.messages.*;
 import bgu.spl.mics.application.passiveObjects.*;
 import bgu.spl.mics.application.services.*;
 import com.google.gson.Gson;
@@ -10,6 +12,8 @@ import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /** This is the Main class of the application. You should parse the input file,
  * create the different instances of the objects, and run the system.
@@ -31,38 +35,60 @@ public class BookStoreRunner {
             // parse the input JSON file and construct the initial objects
             JsonReader reader = new JsonReader(new FileReader(args[0]));
             InitialBookStoreInfo initialInfo = gson.fromJson(reader, InitialBookStoreInfo.class);
-            int duration = initialInfo.services.time.getDuration();
-            int speed = initialInfo.services.time.getSpeed();
+            int duration = initialInfo.services.time.duration;
+            int speed = initialInfo.services.time.speed;
             currentInventory.load(initialInfo.initialInventory); // open the store's Inventory and add the input book list
             currentResourcesHolder.load(initialInfo.initialResources[0].vehicles); // open the store's ResourcesHolder and add the input vehicle list
+            if (initialInfo.runtime != null)
+                initialInfo.runtime.apply(); // tune the message bus before any service starts
+
+            // add all the store services' threads to appropriate executor services - or all the services to a single actor scheduler
+            String threadsMode = initialInfo.runtime == null ? "platform" : initialInfo.runtime.getThreadsMode();
+            boolean virtualThreads = threadsMode.equals("virtual");
+            ActorScheduler actorScheduler = threadsMode.equals("actors") ? new ActorScheduler() : null;
+            VirtualClock virtualClock = initialInfo.runtime != null && initialInfo.runtime.isVirtualClock() ? new VirtualClock() : null;
+            if (virtualClock != null && actorScheduler != null)
+                throw new IllegalArgumentException("The virtual clock needs every service on a thread of its own - it cannot run with actors");
+            TickScheduler.OverrunPolicy tickOverrunPolicy = initialInfo.runtime != null && initialInfo.runtime.tickOverrun != null ?
+                    TickScheduler.OverrunPolicy.valueOf(initialInfo.runtime.tickOverrun.toUpperCase().replace('-', '_')) : TickScheduler.OverrunPolicy.CATCH_UP;
+            ShutdownCoordinator shutdownCoordinator = new ShutdownCoordinator(); // counts down the services running on threads as they leave
+            Map<String, AutoscalingSettings> autoscaling = initialInfo.runtime != null && initialInfo.runtime.autoscaling != null ? initialInfo.runtime.autoscaling : Collections.emptyMap();
+            if (!Arrays.asList("SellingService", "InventoryService", "LogisticsService").containsAll(autoscaling.keySet()))
+                throw new IllegalArgumentException("Only the selling, inventory and logistics services can be scaled: " + autoscaling.keySet());
+            ExecutorService sellingServicesPool = newServicesPool(maxInstancesOf("SellingService", initialInfo.services.selling, autoscaling), virtualThreads),
+                    inventoryServicesPool = newServicesPool(maxInstancesOf("InventoryService", initialInfo.services.inventoryService, autoscaling), virtualThreads),
+                    logisticsServicesPool = newServicesPool(maxInstancesOf("LogisticsService", initialInfo.services.logistics, autoscaling), virtualThreads),
+                    resourceServicesPool = newServicesPool(initialInfo.services.resourcesService, virtualThreads),
+                    apiServicesPool = newServicesPool(initialInfo.services.customers.length, virtualThreads),
+                    supervisorServicePool = newServicesPool(1, virtualThreads);
+
+            // start the selling, inventory and logistics services - each group through a supervisor if it is scaled at runtime
+            List<ServiceSupervisor> serviceSupervisors = new ArrayList<>();
+            startServiceGroup("SellingService", BookOrderEvent.class, i -> new SellingService(i,duration,speed), initialInfo.services.selling,
+                    service -> startService(service, sellingServicesPool, actorScheduler, shutdownCoordinator), autoscaling, serviceSupervisors);
+            startServiceGroup("InventoryService", CheckAvailabilityEvent.class, i -> new InventoryService(i, duration), initialInfo.services.inventoryService,
+                    service -> startService(service, inventoryServicesPool, actorScheduler, shutdownCoordinator), autoscaling, serviceSupervisors);
+            startServiceGroup("LogisticsService", DeliveryEvent.class, i -> new LogisticsService(i,duration,speed), initialInfo.services.logistics,
+                    service -> startService(service, logisticsServicesPool, actorScheduler, shutdownCoordinator), autoscaling, serviceSupervisors);
+            if (!serviceSupervisors.isEmpty())
+                startService(new SupervisorService(duration, serviceSupervisors), supervisorServicePool, actorScheduler, shutdownCoordinator);
 
-            // add all the store services' threads to appropriate executor services
-            ExecutorService sellingServicesPool = Executors.newFixedThreadPool(initialInfo.services.selling),
-                    inventoryServicesPool = Executors.newFixedThreadPool(initialInfo.services.inventoryService),
-                    logisticsServicesPool = Executors.newFixedThreadPool(initialInfo.services.logistics),
-                    resourceServicesPool = Executors.newFixedThreadPool(initialInfo.services.resourcesService),
-                    apiServicesPool = Executors.newFixedThreadPool(initialInfo.services.customers.length);
-
-            for (int i=1 ; i<=initialInfo.services.selling; i++)
-                sellingServicesPool.submit(new SellingService(i,duration,speed));
-            for (int i=1 ; i<=initialInfo.services.inventoryService; i++)
-                inventoryServicesPool.submit(new InventoryService(i, duration));
-            for (int i=1 ; i<=initialInfo.services.logistics; i++)
-                logisticsServicesPool.submit(new LogisticsService(i,duration,speed));
             for (int i=1 ; i<=initialInfo.services.resourcesService; i++)
-                resourceServicesPool.submit(new ResourceService(i, duration));
+                startService(new ResourceService(i, duration), resourceServicesPool, actorScheduler, shutdownCoordinator);
 
             // initiate new APIServices for each customer and put them in a hash map
             for (int i=0; i<initialInfo.services.customers.length; i++) {
 
                 Customer currentCustomer = new Customer(initialInfo.services.customers[i]);
-                apiServicesPool.submit(new APIService (i+1, duration, speed, currentCustomer)); // initiate and start a new APIService thread for the customer
+                startService(new APIService (i+1, duration, speed, currentCustomer), apiServicesPool, actorScheduler, shutdownCoordinator); // initiate and start a new APIService for the customer
                 /*new Thread(new APIService (i+1, currentCustomer)).start(); */
                 customerHashMap.put(currentCustomer.getId(), currentCustomer); // put the customer in the hash map
             }
 
-            // initialize the time service
-            Thread timeServiceThread = new Thread(new TimeService(speed,duration));
+            // initialize the time service - in simulated time it waits for all the other services before the first tick
+            int servicesCount = initialInfo.services.selling + initialInfo.services.inventoryService + initialInfo.services.logistics
+                    + (serviceSupervisors.isEmpty() ? 0 : 1) + initialInfo.services.resourcesService + initialInfo.services.customers.length;
+            Thread timeServiceThread = new Thread(new TimeService(speed, duration, virtualClock, servicesCount, tickOverrunPolicy));
             timeServiceThread.start();
             timeServiceThread.join(); // wait for the time service to terminate
 
@@ -72,13 +98,21 @@ public class BookStoreRunner {
             logisticsServicesPool.shutdown();
             resourceServicesPool.shutdown();
             apiServicesPool.shutdown();
+            supervisorServicePool.shutdown();
 
-            // wait the maximum time for all the executor services to terminate
-            sellingServicesPool.awaitTermination(duration*speed, TimeUnit.MILLISECONDS);
-            inventoryServicesPool.awaitTermination(duration*speed, TimeUnit.MILLISECONDS);
-            logisticsServicesPool.awaitTermination(duration*speed, TimeUnit.MILLISECONDS);
-            resourceServicesPool.awaitTermination(duration*speed, TimeUnit.MILLISECONDS);
-            apiServicesPool.awaitTermination(duration*speed, TimeUnit.MILLISECONDS);
+            // wait until the last service left - at most the shutdown timeout, or the whole duration of the store by default
+            long shutdownTimeout = initialInfo.runtime != null && initialInfo.runtime.shutdownTimeout != null ? initialInfo.runtime.shutdownTimeout : duration*speed;
+            boolean allServicesLeft = actorScheduler != null ? actorScheduler.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)
+                    : shutdownCoordinator.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS);
+
+            if (!allServicesLeft) {
+                if (actorScheduler != null)
+                    System.err.println("Services still running after " + shutdownTimeout + "ms");
+                else if (initialInfo.runtime != null && initialInfo.runtime.shutdownTimeout != null) // a hard deadline - stop the stuck services
+                    System.err.println("Interrupted services still running after " + shutdownTimeout + "ms: " + shutdownCoordinator.interruptRemaining());
+                else
+                    System.err.println("Services still running after " + shutdownTimeout + "ms: " + shutdownCoordinator.getRemainingServices());
+            }
 
             // print the output files after the services are terminated
             Printer.print(customerHashMap,args[1]); // customer list
@@ -91,6 +125,126 @@ public class BookStoreRunner {
         }
     }
 
+    /**
+     * Starts running a store service - on the executor service of its group, or on the actor scheduler if there is one
+     * @param service        The service to start
+     * @param servicesPool   The executor service of the group of the service
+     * @param actorScheduler The scheduler running all the services, or null if each service runs on a thread of its own
+     * @param shutdownCoordinator The coordinator waiting for the services running on threads to leave
+     */
+    private static void startService(MicroService service, ExecutorService servicesPool, ActorScheduler actorScheduler, ShutdownCoordinator shutdownCoordinator) {
+
+        if (actorScheduler != null)
+            actorScheduler.start(service);
+        else
+            servicesPool.submit(shutdownCoordinator.track(service));
+    }
+
+    /**
+     * Starts a group of interchangeable store services - all at once, or through a {@link ServiceSupervisor}
+     * that scales the group at runtime if autoscaling is configured for it
+     * @param serviceName        The simple class name of the services of the group
+     * @param eventType          The event type handled by the group
+     * @param serviceFactory     Creates the service numbered by its argument
+     * @param initialInstances   The amount of services in the input file
+     * @param serviceStarter     Starts running a created service
+     * @param autoscaling        The autoscaling settings of the scaled groups
+     * @param serviceSupervisors The supervisors of the scaled groups - the group's supervisor is added if it is scaled
+     */
+    private static void startServiceGroup(String serviceName, Class<? extends Event> eventType, IntFunction<? extends MicroService> serviceFactory, int initialInstances,
+                                          Consumer<MicroService> serviceStarter, Map<String, AutoscalingSettings> autoscaling, List<ServiceSupervisor> serviceSupervisors) {
+
+        AutoscalingSettings autoscalingSettings = autoscaling.get(serviceName);
+
+        if (autoscalingSettings == null) {
+            for (int i=1 ; i<=initialInstances; i++)
+                serviceStarter.accept(serviceFactory.apply(i));
+            return;
+        }
+
+        ServiceSupervisor serviceSupervisor = new ServiceSupervisor(eventType, serviceFactory, serviceStarter, autoscalingSettings.min, autoscalingSettings.max);
+        serviceSupervisor.setTargets(autoscalingSettings.depth > 0 ? autoscalingSettings.depth : ServiceSupervisor.DEFAULT_DEPTH_TARGET,
+                autoscalingSettings.latency > 0 ? autoscalingSettings.latency : Long.MAX_VALUE, TimeUnit.MILLISECONDS); // the latency is not looked at by default
+        serviceSupervisor.start(initialInstances);
+        serviceSupervisors.add(serviceSupervisor);
+    }
+
+    /**
+     * @param serviceName      The simple class name of the services of a group
+     * @param initialInstances The amount of services of the group in the input file
+     * @param autoscaling      The autoscaling settings of the scaled groups
+     * @return The largest amount of services of the group that may run at once
+     */
+    private static int maxInstancesOf(String serviceName, int initialInstances, Map<String, AutoscalingSettings> autoscaling) {
+
+        AutoscalingSettings autoscalingSettings = autoscaling.get(serviceName);
+
+        return autoscalingSettings == null ? initialInstances : Math.max(initialInstances, autoscalingSettings.max);
+    }
+
+    /**
+     * Creates the executor service running a group of store services - a fixed pool with a platform thread for each
+     * service, or a virtual thread for each service, which lets a single process run a huge amount of customers
+     * @param servicesCount  The amount of services in the group
+     * @param virtualThreads true to run each service on a virtual thread
+     * @return A new executor service
+     */
+    private static ExecutorService newServicesPool(int servicesCount, boolean virtualThreads) {
+
+        if (!virtualThreads)
+            return Executors.newFixedThreadPool(servicesCount);
+
+        // looked up reflectively, so the store still builds and runs in platform-thread mode on older JDKs
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException exception) {
+            throw new IllegalStateException("Running the services on virtual threads requires Java 21 or later", exception);
+        }
+    }
+
+    /**
+     * Creates the dispatch strategy named {@code strategyName}
+     * @param strategyName One of round-robin, least-queue-depth, power-of-two-choices and sticky
+     * @return A new strategy instance
+     */
+    private static DispatchStrategy createDispatchStrategy(String strategyName) {
+
+        switch (strategyName) {
+            case "round-robin":
+                return new RoundRobinDispatch();
+            case "least-queue-depth":
+                return new LeastQueueDepthDispatch();
+            case "power-of-two-choices":
+                return new PowerOfTwoChoicesDispatch();
+            case "sticky":
+                return new StickyKeyDispatch(BookStoreRunner::dispatchKeyOf);
+            default:
+                throw new IllegalArgumentException("Unknown dispatch strategy: " + strategyName);
+        }
+    }
+
+    /**
+     * The key by which a sticky dispatch strategy keeps related events on the same service -
+     * all the orders of a customer, all the checks of a book, all the deliveries to an address
+     * @param event The event being sent
+     * @return The key of the event, or null if it has none
+     */
+    private static Object dispatchKeyOf(Event<?> event) {
+
+        if (event instanceof BookOrderEvent)
+            return ((BookOrderEvent) event).getCurrentCustomer().getId();
+        if (event instanceof CheckAvailabilityEvent)
+            return ((CheckAvailabilityEvent) event).getBookTitle();
+        if (event instanceof DeliveryEvent)
+            return ((DeliveryEvent) event).getAddress();
+        if (event instanceof AcquireVehicleEvent)
+            return ((AcquireVehicleEvent) event).getAddress();
+        if (event instanceof ReleaseVehicleEvent)
+            return ((ReleaseVehicleEvent) event).getVehicle().getLicense();
+
+        return null;
+    }
+
     // private nested classes - used only for reading the input JSON file
 
     private class InitialBookStoreInfo {
@@ -98,6 +252,7 @@ public class BookStoreRunner {
         private BookInventoryInfo[] initialInventory;
         private InitialResources[] initialResources;
         private Services services;
+        private RuntimeSettings runtime; // optional
 
 
         private InitialBookStoreInfo(BookInventoryInfo[] initialInventory, InitialResources[] initialResources, Services services) {
@@ -120,11 +275,11 @@ public class BookStoreRunner {
 
     private class Services {
 
-        private TimeService time;
+        private TimeSettings time;
         private int selling, inventoryService, logistics, resourcesService;
         private Customer[] customers;
 
-        private Services(TimeService time, int selling, int inventoryService, int logistics, int resourcesService, Customer[] customers) {
+        private Services(TimeSettings time, int selling, int inventoryService, int logistics, int resourcesService, Customer[] customers) {
             this.time = time;
             this.selling = selling;
             this.inventoryService = inventoryService;
@@ -133,4 +288,164 @@ public class BookStoreRunner {
             this.customers = customers;
         }
     }
+
+    /**
+     * The settings of the store's {@link TimeService} - read into a plain object rather than into the service itself,
+     * as reflecting into the service's timer and thread-bound fields is not allowed on newer JDKs
+     */
+    private class TimeSettings {
+
+        private int speed, duration;
+
+        private TimeSettings(int speed, int duration) {
+
+            this.speed = speed;
+            this.duration = duration;
+        }
+    }
+
+    /**
+     * Optional tuning of the store's runtime, read from the "runtime" object of the input file, e.g.
+     * {@code "runtime": {"dispatch": {"DeliveryEvent": "least-queue-depth"}, "lanes": {"ReleaseVehicleEvent": "control"},
+     * "mailboxCapacity": {"default": 1024, "SellingService": 64}, "overflow": {"BookOrderEvent": {"capacity": 32, "policy": "block", "timeout": 100}},
+     * "stealing": ["BookOrderEvent"], "threads": "actors", "batchSize": {"default": 32, "APIService": 1}, "shutdownTimeout": 500,
+     * "autoscaling": {"SellingService": {"min": 1, "max": 8, "depth": 4, "latency": 20}}, "clock": "virtual", "tickOverrun": "skip"}}
+     */
+    private class RuntimeSettings {
+
+        private Map<String, String> dispatch; // event type simple name -> dispatch strategy name
+        private Map<String, String> lanes; // message type simple name -> control or normal
+        private Map<String, Integer> mailboxCapacity; // service class simple name, or "default" -> capacity of its mailboxes
+        private Map<String, OverflowSettings> overflow; // event type simple name -> its bound and overflow policy
+        private List<String> stealing; // simple names of the event types idle services may steal from busy ones
+        private String threads; // platform (the default), virtual or actors - what the services run on
+        private Map<String, Integer> batchSize; // service class simple name, or "default" -> the amount of messages it takes at once
+        private Long shutdownTimeout; // a hard deadline in milliseconds after the last tick - services still running then are interrupted
+        private Map<String, AutoscalingSettings> autoscaling; // selling, inventory or logistics service class simple name -> the bounds and targets of its group
+        private String clock; // wall (the default) or virtual - what the ticks and the deliveries are timed by
+        private String tickOverrun; // catch-up (the default) or skip - what is done with the ticks due while a tick took longer than the speed
+
+        private RuntimeSettings(Map<String, String> dispatch, Map<String, String> lanes, Map<String, Integer> mailboxCapacity, Map<String, OverflowSettings> overflow,
+                                List<String> stealing, String threads, Map<String, Integer> batchSize, Long shutdownTimeout, Map<String, AutoscalingSettings> autoscaling,
+                                String clock, String tickOverrun) {
+
+            this.dispatch = dispatch;
+            this.lanes = lanes;
+            this.mailboxCapacity = mailboxCapacity;
+            this.overflow = overflow;
+            this.stealing = stealing;
+            this.threads = threads;
+            this.batchSize = batchSize;
+            this.shutdownTimeout = shutdownTimeout;
+            this.autoscaling = autoscaling;
+            this.clock = clock;
+            this.tickOverrun = tickOverrun;
+        }
+
+        /**
+         * @return What the services run on - platform for a platform thread each, virtual for a virtual thread each,
+         *         or actors for a shared pool of threads scheduling each service only when it has messages
+         */
+        private String getThreadsMode() {
+
+            if (threads == null)
+                return "platform";
+            if (threads.equals("platform") || threads.equals("virtual") || threads.equals("actors"))
+                return threads;
+
+            throw new IllegalArgumentException("Unknown threads mode: " + threads);
+        }
+
+        /**
+         * @return true if the ticks and the deliveries are timed by a {@link VirtualClock} - sent and ended as soon as
+         *         the services went quiet - rather than by the wall clock
+         */
+        private boolean isVirtualClock() {
+
+            if (clock == null || clock.equals("wall"))
+                return false;
+            if (clock.equals("virtual"))
+                return true;
+
+            throw new IllegalArgumentException("Unknown clock: " + clock);
+        }
+
+        /**
+         * Applies the settings to the message bus
+         */
+        private void apply() {
+
+            MessageBusImpl messageBus = MessageBusImpl.getInstance();
+
+            if (dispatch != null)
+                dispatch.forEach((eventTypeName, strategyName) ->
+                        messageBus.setDispatchStrategy(messageTypeOf(eventTypeName, Event.class), createDispatchStrategy(strategyName)));
+            if (lanes != null)
+                lanes.forEach((messageTypeName, laneName) ->
+                        messageBus.setMessageLane(messageTypeOf(messageTypeName, Message.class), MessageLane.valueOf(laneName.toUpperCase())));
+            if (mailboxCapacity != null)
+                messageBus.setMailboxFactory(microService -> new RingBufferMailbox(RingBufferMailbox.DEFAULT_RING_CAPACITY, mailboxCapacity.getOrDefault(microService.getClass().getSimpleName(),
+                        mailboxCapacity.getOrDefault("default", Integer.MAX_VALUE))));
+            if (overflow != null)
+                overflow.forEach((eventTypeName, overflowSettings) ->
+                        messageBus.setOverflowPolicy(messageTypeOf(eventTypeName, Event.class), overflowSettings.capacity,
+                                OverflowPolicy.valueOf(overflowSettings.policy.toUpperCase().replace('-', '_')), overflowSettings.timeout, TimeUnit.MILLISECONDS));
+            if (stealing != null)
+                stealing.forEach(eventTypeName -> messageBus.setWorkStealing(messageTypeOf(eventTypeName, Event.class), true));
+            if (batchSize != null)
+                messageBus.setBatchSizes(microService -> batchSize.getOrDefault(microService.getClass().getSimpleName(),
+                        batchSize.getOrDefault("default", MessageBusImpl.DEFAULT_BATCH_SIZE)));
+        }
+
+        /**
+         * @param messageTypeName The simple name of a message type in the messages package
+         * @param expectedType    The type the message type has to extend
+         * @return The message type
+         */
+        private <M extends Message> Class<? extends M> messageTypeOf(String messageTypeName, Class<M> expectedType) {
+
+            try {
+                return Class.forName(BookOrderEvent.class.getPackage().getName() + "." + messageTypeName).asSubclass(expectedType);
+            } catch (ClassNotFoundException | ClassCastException exception) {
+                throw new IllegalArgumentException("Unknown " + expectedType.getSimpleName() + " type: " + messageTypeName, exception);
+            }
+        }
+    }
+
+    /**
+     * The bound and overflow policy of a single event type - the policy is block, fail-fast or shed-oldest,
+     * and the timeout is in milliseconds
+     */
+    private class OverflowSettings {
+
+        private int capacity;
+        private String policy;
+        private long timeout;
+
+        private OverflowSettings(int capacity, String policy, long timeout) {
+
+            this.capacity = capacity;
+            this.policy = policy;
+            this.timeout = timeout;
+        }
+    }
+
+    /**
+     * The bounds and targets of a group of services scaled at runtime - the depth is the amount of waiting
+     * messages per service, and the latency is the mean time from sending an event to completing it in milliseconds,
+     * above which the group grows. Zero targets are left at their defaults.
+     */
+    private class AutoscalingSettings {
+
+        private int min, max, depth;
+        private long latency;
+
+        private AutoscalingSettings(int min, int max, int depth, long latency) {
+
+            this.min = min;
+            this.max = max;
+            this.depth = depth;
+            this.latency = latency;
+        }
+    }
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ public class Customer implements Serializable {
 	private final CreditCard creditCard; // a field for the customer's credit card details
 	private final BookOrderEvent[] orderSchedule; // a field for the customer's order schedule
 	private final LinkedList<OrderReceipt> Receipts; // a field for the customer's receipts
+	private transient int reservedAmount; // the credit reserved for books taken and not charged yet - guarded by this customer, runtime bookkeeping only and never serialized
 
 	// constructor
 
@@ -117,6 +118,40 @@ public class Customer implements Serializable {
 		creditCard.amount -= amount;
 	}
 
+	/**
+	 * reserves a given amount of the customer's credit for a book about to be taken - the orders of a customer may be
+	 * handled in parallel, so the credit is reserved at once with the check, and no two orders count on the same money
+	 * @param amount the amount to be reserved
+	 * @return true if the credit not reserved yet covers the amount and it was reserved, false otherwise
+	 */
+	public synchronized boolean reserveCredit(int amount) {
+
+		if (creditCard.amount - reservedAmount < amount)
+			return false;
+
+		reservedAmount += amount;
+		return true;
+	}
+
+	/**
+	 * releases a reservation of {@link #reserveCredit(int)} without charging it - the book could not be taken
+	 * @param amount the amount reserved
+	 */
+	public synchronized void releaseCredit(int amount) {
+
+		reservedAmount -= amount;
+	}
+
+	/**
+	 * subtracts an amount reserved by {@link #reserveCredit(int)} from the customer's credit card balance
+	 * @param amount the amount reserved
+	 */
+	public synchronized void subtractReservedCredit(int amount) {
+
+		creditCard.amount -= amount;
+		reservedAmount -= amount;
+	}
+
 
 	/**
 	 * @return the order schedule of the customer
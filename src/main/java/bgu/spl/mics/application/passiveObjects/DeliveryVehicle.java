@@ -1,5 +1,11 @@
 package bgu.spl.mics.application.passiveObjects;
 
+import bgu.spl.mics.VirtualClock;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Passive data-object representing a delivery vehicle of the store.
  * You must not alter any of the given public methods of this class.
@@ -52,14 +58,56 @@ public class DeliveryVehicle {
      */
 	// the speed is defined in the manual as the number of milliseconds needed for one KM,
 	// and so the time in milliseconds is the speed MULTIPLIED by the distance
-	// the synchronized keyword was added, as delivering a book has to be thread-safe
+	// the vehicle is held by a single logistics service for the whole delivery, so sleeping needs no monitor -
+	// which also keeps a virtual thread delivering the book from pinning its carrier thread
 
-	public synchronized void deliver (String address, int distance) {
+	public void deliver (String address, int distance) {
 
 		try {
-			wait(distance * speed);
+			sleep((long) distance * speed);
 		} catch (InterruptedException exception) {
 			exception.printStackTrace();
 		}
 	}
+
+	/**
+	 * Sleeps for {@code millis} milliseconds - of simulated time if a {@link VirtualClock} is active. A thread of
+	 * a {@link ForkJoinPool} - a logistics service run by an actor scheduler - lets the pool run another thread
+	 * in its place while it sleeps.
+	 * @param millis The time to sleep
+	 * @throws InterruptedException if interrupted while sleeping
+	 */
+	private static void sleep(long millis) throws InterruptedException {
+
+		VirtualClock virtualClock = VirtualClock.getActive();
+
+		if (virtualClock != null) {
+			virtualClock.sleep(millis);
+			return;
+		}
+
+		if (!(Thread.currentThread() instanceof ForkJoinWorkerThread)) {
+			TimeUnit.MILLISECONDS.sleep(millis);
+			return;
+		}
+
+		ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+
+			private boolean slept;
+
+			@Override
+			public boolean block() throws InterruptedException {
+
+				TimeUnit.MILLISECONDS.sleep(millis);
+				slept = true;
+				return true;
+			}
+
+			@Override
+			public boolean isReleasable() {
+
+				return slept;
+			}
+		});
+	}
 }
@@ -80,6 +80,17 @@ public class MoneyRegister implements Serializable {
 
 		c.subtractAmountFromCredit(amount);
 	}
+
+	/**
+     * Charges the credit card of the customer an amount of money reserved by {@link Customer#reserveCredit(int)}.
+     * <p>
+     * @param amount 	amount reserved
+     */
+	// synchronized as it is a thread-safe operation
+	public synchronized void chargeReservedCredit(Customer c, int amount) {
+
+		c.subtractReservedCredit(amount);
+	}
 	
 	/**
      * Prints to a file named @filename a serialized object List<OrderReceipt> which holds all the order receipts 
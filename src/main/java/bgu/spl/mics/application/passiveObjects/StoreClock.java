@@ -0,0 +1,66 @@
+package bgu.spl.mics.application.passiveObjects;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Passive object holding the current tick of the store - published by the store's TimeService whenever
+ * it sends a tick, and read by any service without handling a {@link
+ * bgu.spl.mics.application.messages.TickBroadcast}. Services that only need to know the time read it here,
+ * and wait for the end of the store on the {@link TickAlarms}.
+ * <p>
+ * The tick is read by every service on every message while it changes only once a tick, so it is kept
+ * alone on its cache line - in the middle of an array padded on both sides - and writes to the fields
+ * next to it never evict it from the caches of its readers.
+ * <p>
+ * This class is implemented as a thread-safe singleton.
+ */
+public class StoreClock {
+
+	// fields
+
+	private static final int TICK_INDEX = 16; // 64 bytes of padding on each side of the tick
+
+	private final AtomicIntegerArray paddedTick; // the current tick at TICK_INDEX, 0 until the first tick was sent
+
+	// thread-safe singleton implementation
+
+	private static class StoreClockSingletonHolder {
+
+		private final static StoreClock storeClockInstance = new StoreClock();
+	}
+
+	// constructor
+
+	private StoreClock() {
+
+		paddedTick = new AtomicIntegerArray(2 * TICK_INDEX + 1);
+	}
+
+	/**
+	 * Retrieves the single instance of this class.
+	 */
+	public static StoreClock getInstance() {
+
+		return StoreClockSingletonHolder.storeClockInstance;
+	}
+
+	/**
+	 * @return The current tick of the store, 0 before the first tick was sent.
+	 */
+	public int getCurrentTick() {
+
+		return paddedTick.get(TICK_INDEX);
+	}
+
+	/**
+	 * Publishes the tick sent - called only by the TimeService, before it sends the tick to the services.
+	 * The tick never goes back.
+	 * <p>
+	 * @param tick The tick sent.
+	 */
+	public void advance(int tick) {
+
+		if (tick > paddedTick.get(TICK_INDEX)) // a single writer - no need to compare and set
+			paddedTick.set(TICK_INDEX, tick);
+	}
+}
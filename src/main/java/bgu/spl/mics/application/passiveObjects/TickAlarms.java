@@ -0,0 +1,76 @@
+package bgu.spl.mics.application.passiveObjects;
+
+import bgu.spl.mics.Future;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Passive object holding the alarms services set for the ticks they are waiting for - a service that needs
+ * only a few of the ticks waits on the future of each of them, instead of handling every {@link
+ * bgu.spl.mics.application.messages.TickBroadcast}. The alarms are sounded by the store's TimeService
+ * whenever it sends a tick.
+ * <p>
+ * This class is implemented as a thread-safe singleton.
+ */
+public class TickAlarms {
+
+	// fields
+
+	private final ConcurrentSkipListMap<Integer, Future<Integer>> alarms; // a sorted map of a tick and the future of its alarm
+	private volatile int currentTick; // the last tick sounded
+
+	// thread-safe singleton implementation
+
+	private static class TickAlarmsSingletonHolder {
+
+		private final static TickAlarms tickAlarmsInstance = new TickAlarms();
+	}
+
+	// constructor
+
+	private TickAlarms() {
+
+		alarms = new ConcurrentSkipListMap<>();
+	}
+
+	/**
+	 * Retrieves the single instance of this class.
+	 */
+	public static TickAlarms getInstance() {
+
+		return TickAlarmsSingletonHolder.tickAlarmsInstance;
+	}
+
+	/**
+	 * Gives the alarm of a tick - shared by all the services waiting for it.
+	 * <p>
+	 * @param tick The tick to wait for.
+	 * @return {@link Future<Integer>} object resolved to the tick once it is sounded - right away if it was sounded already.
+	 */
+	public Future<Integer> at(int tick) {
+
+		Future<Integer> alarm = alarms.computeIfAbsent(tick, alarmTick -> new Future<>());
+
+		// the tick may have been sounded while the alarm was being set - exactly one of the setter and the sounder removes it and resolves it
+		if (tick <= currentTick && alarms.remove(tick, alarm))
+			alarm.resolve(tick);
+
+		return alarm;
+	}
+
+	/**
+	 * Sounds the alarms of all the ticks up to {@code tick} - called by the TimeService whenever it sends a tick.
+	 * <p>
+	 * @param tick The tick sent.
+	 */
+	public void sound(int tick) {
+
+		currentTick = tick; // before removing the alarms, so an alarm set from now on sees the tick was sounded
+
+		Map.Entry<Integer, Future<Integer>> alarm;
+		while ((alarm = alarms.firstEntry()) != null && alarm.getKey() <= tick)
+			if (alarms.remove(alarm.getKey(), alarm.getValue()))
+				alarm.getValue().resolve(alarm.getKey());
+	}
+}
@@ -1,18 +1,22 @@
 package bgu.spl.mics.application.services;
 
+import bgu.spl.mics.Future;
 import bgu.spl.mics.application.messages.BookOrderEvent;
 import bgu.spl.mics.MicroService;
-import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.passiveObjects.*;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
 
 /**
  * APIService is in charge of the connection between a client and the store.
  * It informs the store about desired purchases using {@link BookOrderEvent}.
+ * The orders are indexed by their ticks, and the service waits on the {@link TickAlarms} only for the next tick
+ * it has orders in and for the end of the store - it handles no tick broadcasts, and a customer who made
+ * all of their orders just waits for the store to close.
  * This class may not hold references for objects which it is not responsible for:
  * {@link ResourcesHolder}, {@link MoneyRegister}, {@link Inventory}.
  * 
@@ -26,10 +30,11 @@ public class APIService extends MicroService {
 
 	//fields
 
-	private int currentTick; // a field for the current tick got from the time broadcast
+	private int currentTick; // a field for the current tick got from the tick alarms
 	private final int duration, speed;
 	private final Customer currentCustomer;
-	private final List <BookOrderEvent> orderSchedule; // a list for the customer's orders
+	private final TreeMap<Integer, List<BookOrderEvent<OrderReceipt>>> orderSchedule; // a sorted map of a tick and the customer's orders to be made in it
+	private final TickAlarms tickAlarms;
 
 	// constructor
 
@@ -37,8 +42,11 @@ public class APIService extends MicroService {
 
 		super("WebAPIService" + currentNumber);
 		this.currentCustomer = currentCustomer;
-		orderSchedule = new LinkedList<>();
-		Collections.addAll(orderSchedule, currentCustomer.getOrderSchedule());
+		orderSchedule = new TreeMap<>();
+		for (BookOrderEvent currentBookOrderEvent : currentCustomer.getOrderSchedule())
+			if (currentBookOrderEvent.getTick() >= 1 && currentBookOrderEvent.getTick() < duration) // the orders of other ticks are never made
+				orderSchedule.computeIfAbsent(currentBookOrderEvent.getTick(), tick -> new ArrayList<>()).add(currentBookOrderEvent);
+		tickAlarms = TickAlarms.getInstance();
 		this.duration = duration;
 		this.speed = speed;
 		currentTick = 1;
@@ -49,17 +57,38 @@ public class APIService extends MicroService {
 	@Override
 	protected void initialize() {
 
-		// subscribe to get the time broadcast
-		subscribeBroadcast(TickBroadcast.class, apiTickBroadcast -> {
-
-			currentTick = apiTickBroadcast.getTick();
-			if (currentTick == duration)
-				terminate();
-			else
-				for (BookOrderEvent currentBookOrderEvent : orderSchedule)
-					if (currentBookOrderEvent.getTick() == apiTickBroadcast.getTick())
-						currentCustomer.getCustomerReceiptList().add((OrderReceipt) sendEvent(currentBookOrderEvent)
-								.get((duration-currentTick)*speed, TimeUnit.MILLISECONDS)); // save this receipt into customer receipts list
+		// terminate at the last tick, like the services handling the tick broadcasts
+		whenResolved(tickAlarms.at(duration), lastTick -> {
+
+			currentTick = lastTick;
+			terminate();
+		});
+
+		awaitNextOrders();
+	}
+
+	/**
+	 * Waits for the next tick the customer has orders in, and then makes its orders and waits for the one after it
+	 */
+	private void awaitNextOrders() {
+
+		Map.Entry<Integer, List<BookOrderEvent<OrderReceipt>>> nextTickOrders = orderSchedule.pollFirstEntry();
+
+		if (nextTickOrders == null)
+			return; // all the orders were made
+
+		whenResolved(tickAlarms.at(nextTickOrders.getKey()), orderTick -> {
+
+			currentTick = orderTick;
+
+			// send all the orders of the tick in a single batch - they are handled in parallel
+			List<Future<OrderReceipt>> currentReceiptFutures = sendEvents(nextTickOrders.getValue());
+			currentReceiptFutures.removeIf(Objects::isNull); // no selling service is available for these orders
+
+			// save the receipts of the tick into customer receipts list once all of them arrived
+			whenResolved(Future.allOf(currentReceiptFutures), currentCustomer.getCustomerReceiptList()::addAll);
+
+			awaitNextOrders();
 		});
 	}
 }
\ No newline at end of file
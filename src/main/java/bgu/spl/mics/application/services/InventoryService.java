@@ -20,7 +20,6 @@ public class InventoryService extends MicroService {
 
 	//fields
 
-	private int currentTick; // a field for the current tick got from the time broadcast
 	private final int duration;
 	private final Inventory inventoryInstance;
 
@@ -31,7 +30,6 @@ public class InventoryService extends MicroService {
 		super("InventoryService" + currentNumber);
 		inventoryInstance = Inventory.getInstance();
 		this.duration = duration;
-		currentTick = 1;
 	}
 
 	// methods
@@ -39,28 +37,26 @@ public class InventoryService extends MicroService {
 	@Override
 	protected void initialize() {
 
-		// subscribe to get the TickBroadcast
-		subscribeBroadcast(TickBroadcast.class, inventoryTickBroadcast -> {
-
-			currentTick = inventoryTickBroadcast.getTick();
-			if (currentTick == duration)
-				terminate();
-		});
+		// terminate at the last tick - the service needs no other tick
+		whenResolved(TickAlarms.getInstance().at(duration), lastTick -> terminate());
 
 		// subscribe to handle events of type CheckAvailabilityEvent
 		subscribeEvent(CheckAvailabilityEvent.class, checkAvailabilityEvent -> {
 
 			String currentBookTitle = checkAvailabilityEvent.getBookTitle();
+			Customer currentCustomer = checkAvailabilityEvent.getCurrentCustomer();
 			int currentBookPrice = inventoryInstance.checkAvailabiltyAndGetPrice(currentBookTitle);
 
-			// complete according to the price gotten
+			// complete according to the price gotten - the credit is reserved before the book is taken, and charged by the selling service
 
-			if (currentBookPrice == -1 || currentBookPrice > checkAvailabilityEvent.getCurrentCustomer().getAvailableCreditAmount())
+			if (currentBookPrice == -1 || !currentCustomer.reserveCredit(currentBookPrice))
 				complete(checkAvailabilityEvent, -1);
 			else if (inventoryInstance.take(currentBookTitle) == OrderResult.SUCCESSFULLY_TAKEN)
 				complete(checkAvailabilityEvent, currentBookPrice);
-			else
+			else {
+				currentCustomer.releaseCredit(currentBookPrice); // the book ran out meanwhile
 				complete(checkAvailabilityEvent, -1);
+			}
 		});
 	}
 }
\ No newline at end of file
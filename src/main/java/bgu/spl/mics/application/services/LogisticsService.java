@@ -2,8 +2,10 @@ package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.Future;
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.TimingWheel;
 import bgu.spl.mics.application.messages.*;
 import bgu.spl.mics.application.passiveObjects.*;
+
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -22,7 +24,6 @@ public class LogisticsService extends MicroService {
 
 	//fields
 
-	private int currentTick; // a field for the current tick got from the time broadcast
 	private final int duration, speed;
 
 	// constructor
@@ -32,7 +33,6 @@ public class LogisticsService extends MicroService {
 		super("LogisticsService" + currentNumber);
 		this.duration = duration;
 		this.speed = speed;
-		currentTick = 1;
 	}
 
 	// methods
@@ -40,26 +40,37 @@ public class LogisticsService extends MicroService {
 	@Override
 	protected void initialize() {
 
-		// subscribe to get the TickBroadcast
-		subscribeBroadcast(TickBroadcast.class, logisticsTickBroadcast -> {
-
-			currentTick = logisticsTickBroadcast.getTick();
-			if (currentTick == duration)
-				terminate();
-		});
+		// terminate at the last tick - the service needs no other tick
+		whenResolved(TickAlarms.getInstance().at(duration), lastTick -> terminate());
 
-		// subscribe to handle events of type DeliveryEvent
+		// subscribe to handle events of type DeliveryEvent - the book is delivered once a vehicle is acquired,
+		// and the service takes the next deliveries meanwhile instead of waiting for a vehicle or for the trip to end
 		subscribeEvent(DeliveryEvent.class, deliveryEvent -> {
 
-			AcquireVehicleEvent acquiredVehicleEvent = new AcquireVehicleEvent<>(deliveryEvent.getAddress());
+			Future<Future<DeliveryVehicle>> acquiredVehicleFuture = sendEvent(new AcquireVehicleEvent<Future<DeliveryVehicle>>(deliveryEvent.getAddress()));
+
+			if (acquiredVehicleFuture == null) {
+				complete(deliveryEvent, null); // no resource service is available
+				return;
+			}
+
+			// the resource service resolves the event with a future of the vehicle, resolved once a vehicle is free
+			whenResolved(Future.flatten(acquiredVehicleFuture), acquiredVehicle -> {
+
+				if (acquiredVehicle == null) {
+					complete(deliveryEvent, null); // the store closed before a vehicle was free
+					return;
+				}
+
+				// the trip takes as long as DeliveryVehicle.deliver sleeps - the speed of a vehicle is the time it takes to cover one KM
+				Future<Void> tripFuture = TimingWheel.getInstance().schedule((long) deliveryEvent.getDistance() * acquiredVehicle.getSpeed(), TimeUnit.MILLISECONDS);
 
-			DeliveryVehicle acquiredVehicle = ((Future<Future<DeliveryVehicle>>)
-					sendEvent(acquiredVehicleEvent)).get((duration-currentTick)*speed, TimeUnit.MILLISECONDS)
-					.get((duration-currentTick)*speed, TimeUnit.MILLISECONDS); // wait for an acquired vehicle
+				whenResolved(tripFuture, arrived -> {
 
-			acquiredVehicle.deliver(deliveryEvent.getAddress(), deliveryEvent.getDistance()); // deliver the book
-			sendEvent(new ReleaseVehicleEvent<>(acquiredVehicle)).get((duration-currentTick)*speed, TimeUnit.MILLISECONDS); // release the vehicle
-			complete(deliveryEvent, acquiredVehicle);
+					sendEvent(new ReleaseVehicleEvent<>(acquiredVehicle)); // release the vehicle
+					complete(deliveryEvent, acquiredVehicle);
+				});
+			});
 		});
 	}
 
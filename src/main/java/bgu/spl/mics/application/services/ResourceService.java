@@ -23,7 +23,6 @@ public class ResourceService extends MicroService {
 
 	//fields
 
-	private int currentTick; // a field for the current tick got from the time broadcast
 	private final int duration;
 	private final ResourcesHolder resourcesHolderInstance; // the resource holder instance
 	private ConcurrentLinkedQueue<Future<DeliveryVehicle>> pendingForDeliveryVehiclesQueue; // a queue for the the requests for vehicles
@@ -36,7 +35,6 @@ public class ResourceService extends MicroService {
 		resourcesHolderInstance = ResourcesHolder.getInstance();
 		pendingForDeliveryVehiclesQueue = new ConcurrentLinkedQueue<>();
 		this.duration = duration;
-		currentTick = 1;
 	}
 
 	// methods
@@ -44,17 +42,13 @@ public class ResourceService extends MicroService {
 	@Override
 	protected void initialize() {
 
-		// subscribe to get the TickBroadcast
-		subscribeBroadcast(TickBroadcast.class, resourceTickBroadcast -> {
+		// terminate at the last tick - the service needs no other tick
+		whenResolved(TickAlarms.getInstance().at(duration), lastTick -> {
 
-			currentTick = resourceTickBroadcast.getTick();
-			if (currentTick == duration) {
+			for (Future<DeliveryVehicle> currentFuture : pendingForDeliveryVehiclesQueue)
+				currentFuture.resolve(null); // resolve all pending requests for vehicles
 
-				for (Future<DeliveryVehicle> currentFuture : pendingForDeliveryVehiclesQueue)
-					currentFuture.resolve(null); // resolve all pending requests for vehicles
-
-				terminate();
-			}
+			terminate();
 		});
 
 		// subscribe to handle events of type AcquireVehicleEvent
@@ -1,10 +1,11 @@
 package bgu.spl.mics.application.services;
 
+import bgu.spl.mics.Future;
 import bgu.spl.mics.application.messages.*;
 import bgu.spl.mics.MicroService;
 import bgu.spl.mics.application.passiveObjects.*;
 
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Selling service in charge of taking orders from customers.
@@ -25,8 +26,8 @@ public class SellingService extends MicroService {
 
 	private final MoneyRegister moneyRegisterInstance; // a final MoneyRegister instance
 	private final int duration, speed;
-	private int currentTick, processTick; // fields for the current tick got from the time broadcast and the tick in which a BookOrderEvent process started
-	private static int orderId; // a static field that keeps the order ID - iterated at each order completion
+	private final StoreClock storeClock; // the store clock the current tick is read from
+	private static final AtomicInteger orderId = new AtomicInteger(1); // the next order ID - shared by all the sellers, including those started while the store runs
 
 	// constructor
 
@@ -34,9 +35,7 @@ public class SellingService extends MicroService {
 
 		super("SellingService" + currentNumber);
 		moneyRegisterInstance = MoneyRegister.getInstance();
-		orderId = 1;
-		currentTick = 1;
-		processTick = 1;
+		storeClock = StoreClock.getInstance();
 		this.duration = duration;
 		this.speed = speed;
 	}
@@ -46,37 +45,38 @@ public class SellingService extends MicroService {
 	@Override
 	protected void initialize() {
 
-		// subscribe to get the TickBroadcast
-		subscribeBroadcast(TickBroadcast.class, sellingTickBroadcast -> {
+		// terminate at the last tick - the current tick is read from the store clock
+		whenResolved(TickAlarms.getInstance().at(duration), lastTick -> terminate());
 
-			// define the callback call function for the TickBroadcast as a lambda
-			currentTick = sellingTickBroadcast.getTick();
-			if (currentTick == duration)
-				terminate();
-		});
-
-		// subscribe to handle events of type BookOrderEvent
+		// subscribe to handle events of type BookOrderEvent - the order is completed once the availability check is resolved,
+		// and the service takes the next orders meanwhile instead of waiting for it
 		subscribeEvent(BookOrderEvent.class, bookOrderEvent -> {
 
-			processTick = currentTick; // declare the starting tick as the current one
+			int processTick = storeClock.getCurrentTick(); // declare the starting tick as the current one
 			String currentBookTitle = bookOrderEvent.getBookTitle();
 			Customer currentCustomer = bookOrderEvent.getCurrentCustomer();
-			int currentBookPrice = (int) sendEvent(new CheckAvailabilityEvent<>(currentBookTitle,currentCustomer))
-					.get((duration-currentTick)*speed, TimeUnit.MILLISECONDS);
-
-			// checks if the book is in the inventory and the customer has enough money
-			if (currentBookPrice != -1 && currentCustomer.getAvailableCreditAmount() >= currentBookPrice) {
-
-				OrderReceipt currentPurchaseReceipt = new OrderReceipt(SellingService.orderId, this.getName(), currentCustomer.getId(),
-						currentBookTitle, currentBookPrice, currentTick, bookOrderEvent.getTick(), processTick); // create an order receipt
-				moneyRegisterInstance.chargeCreditCard(currentCustomer, currentBookPrice); // charge the customer the price of the book
-				moneyRegisterInstance.file(currentPurchaseReceipt); // file the order receipt to the money register
-				SellingService.orderId++; // increment the orderID
-				sendEvent(new DeliveryEvent<>(currentCustomer.getAddress(), currentCustomer.getDistance()));
-				complete(bookOrderEvent, currentPurchaseReceipt);
+			Future<Integer> bookPriceFuture = sendEvent(new CheckAvailabilityEvent<Integer>(currentBookTitle,currentCustomer));
+
+			if (bookPriceFuture == null) {
+				complete(bookOrderEvent, null); // no inventory service is available
+				return;
 			}
-			else
-				complete(bookOrderEvent, null);
+
+			whenResolved(bookPriceFuture, currentBookPrice -> {
+
+				// checks if the book was taken from the inventory - the price is then reserved on the customer's credit
+				if (currentBookPrice != null && currentBookPrice != -1) {
+
+					OrderReceipt currentPurchaseReceipt = new OrderReceipt(orderId.getAndIncrement(), this.getName(), currentCustomer.getId(),
+							currentBookTitle, currentBookPrice, storeClock.getCurrentTick(), bookOrderEvent.getTick(), processTick); // create an order receipt
+					moneyRegisterInstance.chargeReservedCredit(currentCustomer, currentBookPrice); // charge the customer the price of the book
+					moneyRegisterInstance.file(currentPurchaseReceipt); // file the order receipt to the money register
+					sendEvent(new DeliveryEvent<>(currentCustomer.getAddress(), currentCustomer.getDistance()));
+					complete(bookOrderEvent, currentPurchaseReceipt);
+				}
+				else
+					complete(bookOrderEvent, null);
+			});
 		});
 	}
 
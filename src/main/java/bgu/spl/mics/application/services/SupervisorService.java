@@ -0,0 +1,51 @@
+package bgu.spl.mics.application.services;
+
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceSupervisor;
+import bgu.spl.mics.application.messages.TickBroadcast;
+import bgu.spl.mics.application.passiveObjects.*;
+
+import java.util.List;
+
+/**
+ * SupervisorService scales the groups of store services configured for autoscaling - it samples each of
+ * their {@link ServiceSupervisor}s on every tick, which may start or retire a single service of the group.
+ * Services are started only up to the tick before the last, so none of them starts just as the store closes.
+ * This class may not hold references for objects which it is not responsible for:
+ * {@link ResourcesHolder}, {@link MoneyRegister}, {@link Inventory}.
+ */
+public class SupervisorService extends MicroService {
+
+	//fields
+
+	private int currentTick; // a field for the current tick got from the time broadcast
+	private final int duration;
+	private final List<ServiceSupervisor> serviceSupervisors; // the supervisors of the scaled groups
+
+	// constructor
+
+	public SupervisorService(int duration, List<ServiceSupervisor> serviceSupervisors) {
+
+		super("SupervisorService");
+		this.duration = duration;
+		this.serviceSupervisors = serviceSupervisors;
+		currentTick = 1;
+	}
+
+	// methods
+
+	@Override
+	protected void initialize() {
+
+		// subscribe to get the TickBroadcast
+		subscribeBroadcast(TickBroadcast.class, supervisorTickBroadcast -> {
+
+			currentTick = supervisorTickBroadcast.getTick();
+			if (currentTick >= duration)
+				terminate();
+			else if (currentTick < duration - 1) // a service started later might subscribe after the last tick was sent
+				for (ServiceSupervisor serviceSupervisor : serviceSupervisors)
+					serviceSupervisor.sample();
+		});
+	}
+}
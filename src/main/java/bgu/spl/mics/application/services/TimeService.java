@@ -1,11 +1,12 @@
 package bgu.spl.mics.application.services;
 
 import bgu.spl.mics.MicroService;
+import bgu.spl.mics.TickScheduler;
+import bgu.spl.mics.VirtualClock;
 import bgu.spl.mics.application.messages.TerminateStoreBroadcast;
 import bgu.spl.mics.application.messages.TickBroadcast;
 import bgu.spl.mics.application.passiveObjects.*;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -14,6 +15,13 @@ import java.util.concurrent.atomic.AtomicInteger;
  * all other micro-services about the current time tick using {@link TickBroadcast}.
  * This class may not hold references for objects which it is not responsible for:
  * {@link ResourcesHolder}, {@link MoneyRegister}, {@link Inventory}.
+ * <p>
+ * The ticks are sent on the thread of the service by a {@link TickScheduler}, which keeps them from drifting
+ * and handles ticks that took longer than the speed by its overrun policy - running the late ticks back to back
+ * or skipping them. The overruns are reported once the store closed, and their details are published over JMX.
+ * <p>
+ * Given a {@link VirtualClock}, the ticks are sent in simulated time rather than by a timer - each tick is sent
+ * as soon as all the other services went quiet after the previous one, so the run takes as long as its work.
  * 
  * You can add private fields and public methods to this class.
  * You MAY change constructor signatures and even add new public constructors.
@@ -23,18 +31,38 @@ public class TimeService extends MicroService {
 	// fields
 
 	private final int speed, duration; // make the speed and duration final as they cannot be changed when the store is open
-	private final Timer storeTimer; // a final timer instance that handles the time
+	private final TickScheduler tickScheduler; // sends the ticks in wall-clock time, null in simulated time
 	private final AtomicInteger currentTick; // an atomic integer for the tick value
+	private final StoreClock storeClock; // the current tick read by the services, published with every tick
+	private final TickAlarms tickAlarms; // the alarms services set for the ticks they wait for, sounded with every tick
+	private final VirtualClock virtualClock; // the clock the ticks are sent in, or null to send them in wall-clock time
+	private final int services; // the amount of the other services, waited for before the first tick in simulated time
 
-	// constructor
+	// constructors
 
 	public TimeService(int speed, int duration) {
 
+		this(speed, duration, null, 0, TickScheduler.OverrunPolicy.CATCH_UP);
+	}
+
+	/**
+	 * @param speed         The length of a tick in milliseconds
+	 * @param duration      The amount of ticks
+	 * @param virtualClock  The clock to send the ticks in, or null to send them in wall-clock time
+	 * @param services      The amount of the other services of the store - all of them are waited for before the first tick in simulated time
+	 * @param overrunPolicy What is done once a tick took longer than the speed in wall-clock time
+	 */
+	public TimeService(int speed, int duration, VirtualClock virtualClock, int services, TickScheduler.OverrunPolicy overrunPolicy) {
+
 		super("TimeService");
 		this.speed = speed;
 		this.duration = duration;
-		storeTimer = new Timer();
+		tickScheduler = virtualClock == null ? new TickScheduler(speed, TimeUnit.MILLISECONDS, overrunPolicy) : null;
 		currentTick = new AtomicInteger(1);
+		storeClock = StoreClock.getInstance();
+		tickAlarms = TickAlarms.getInstance();
+		this.virtualClock = virtualClock;
+		this.services = services;
 	}
 
 	//methods
@@ -45,23 +73,66 @@ public class TimeService extends MicroService {
 		// subscribe to get the TerminateStoreBroadcast
 		subscribeBroadcast(TerminateStoreBroadcast.class, terminateStoreBroadcast -> terminate());
 
-		// start the timer with an appropriate task and at the fixed given speed
-		storeTimer.scheduleAtFixedRate(new TimerTask() { // define a new timer that handles the tick that represent time
+		if (virtualClock != null) {
+			runInSimulatedTime();
+			return;
+		}
+
+		// send the ticks at the fixed given speed - the tick after the last one closes the store. The last tick is never
+		// skipped on an overrun, as whoever waits for it would never get it
+		tickScheduler.run(1, duration + 1, tick -> tick >= duration, tick -> {
+
+			if (tick <= duration)
+				sendTick(tick);
+			else
+				closeStore();
+		});
+
+		if (tickScheduler.getOverruns() > 0)
+			System.err.println(tickScheduler.getOverruns() + " ticks took longer than the speed of " + speed + "ms - 99% of them by less than "
+					+ TimeUnit.NANOSECONDS.toMillis(tickScheduler.getOverrunP99()) + "ms, and " + tickScheduler.getTicksSkipped() + " ticks were skipped");
+	}
+
+	/**
+	 * Sends a tick - publishes it on the store clock, broadcasts it and wakes the services waiting for it
+	 * @param tick The tick to send
+	 */
+	private void sendTick(int tick) {
+
+		currentTick.set(tick);
+		storeClock.advance(tick); // publish the tick before any service hears of it
+		sendBroadcast(new TickBroadcast(tick)); // send the time broadcast
+		tickAlarms.sound(tick); // wake the services waiting for the tick - and for the ticks skipped before it
+	}
+
+	/**
+	 * Terminates the service and the rest of the store
+	 */
+	private void closeStore() {
+
+		terminate();
+		sendBroadcast(new TerminateStoreBroadcast()); // sends a broadcast to terminate the store
+	}
+
+	/**
+	 * Sends all the ticks in simulated time, on the thread of the service - each tick at the time the scheduler would
+	 * send it, once all the other services went quiet, and the termination broadcast at the end of the last tick
+	 */
+	private void runInSimulatedTime() {
+
+		virtualClock.activate();
+		virtualClock.awaitServices(services, this);
 
-			@Override
-			public void run() { // define the method that runs in each tick
+		for (int tick = 1; tick <= duration; tick++) {
 
-				if (currentTick.get() <= duration)
-					sendBroadcast(new TickBroadcast(currentTick.getAndIncrement())); // send the time broadcast and increment the tick
-				else {
+			virtualClock.advanceTo((long) (tick - 1) * speed, this); // the deliveries ending before the tick end first
+			sendTick(tick);
+			virtualClock.awaitQuiescence(this);
+		}
 
-					this.cancel(); // cancels the TimerTask
-					storeTimer.cancel(); // cancels the Timer
-					terminate();
-					sendBroadcast(new TerminateStoreBroadcast()); // sends a broadcast to terminate the store
-				}
-			}
-		},0, speed);
+		virtualClock.advanceTo((long) duration * speed, this);
+		closeStore();
+		virtualClock.close(); // the deliveries still going on end now
 	}
 
 	/**
@@ -0,0 +1,132 @@
+import bgu.spl.mics.ActorScheduler;
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link ActorScheduler} public class.
+ */
+
+public class ActorSchedulerTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private ActorScheduler testSchedulerInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testSchedulerInstance = new ActorScheduler(2, ActorScheduler.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Test method for {@link ActorScheduler#start(MicroService)}:
+     * A micro-service run by the scheduler is initialized, handles its messages, and terminates
+     */
+    @Test(timeout = 10000)
+    public void start() throws InterruptedException {
+
+        CountDownLatch initialized = new CountDownLatch(1);
+        testSchedulerInstance.start(new TestService("doubling actor", initialized));
+        initialized.await();
+
+        Future<Integer> doubledFuture = MessageBusImpl.getInstance().sendEvent(new DoubleEvent(21));
+
+        Assert.assertEquals("The event was not handled by the actor", Integer.valueOf(42), doubledFuture.get(5, TimeUnit.SECONDS));
+
+        MessageBusImpl.getInstance().sendBroadcast(new StopBroadcast());
+        Assert.assertTrue("The actor did not terminate", testSchedulerInstance.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test method for {@link ActorScheduler#awaitTermination(long, TimeUnit)}:
+     * Any amount of micro-services can run at once - more than the parties a phaser allows as well
+     */
+    @Test(timeout = 60000)
+    public void awaitTerminationOfMany() throws InterruptedException {
+
+        final int actors = 70000;
+        CountDownLatch initialized = new CountDownLatch(actors);
+        Future<Boolean> stopFuture = new Future<>();
+
+        for (int i = 0; i < actors; i++)
+            testSchedulerInstance.start(new WaitingService("actor " + i, initialized, stopFuture));
+        initialized.await();
+
+        stopFuture.resolve(true);
+
+        Assert.assertTrue("The actors did not all terminate", testSchedulerInstance.awaitTermination(30, TimeUnit.SECONDS));
+    }
+
+    /**
+     * A micro-service doubling the numbers of the events it gets, until it gets a {@link StopBroadcast}
+     */
+    private static class TestService extends MicroService {
+
+        private final CountDownLatch initialized;
+
+        private TestService(String name, CountDownLatch initialized) {
+
+            super(name);
+            this.initialized = initialized;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(DoubleEvent.class, doubleEvent -> complete(doubleEvent, doubleEvent.number * 2));
+            subscribeBroadcast(StopBroadcast.class, stopBroadcast -> terminate());
+            initialized.countDown();
+        }
+    }
+
+    /**
+     * A micro-service waiting, without subscribing to anything, until a future is resolved
+     */
+    private static class WaitingService extends MicroService {
+
+        private final CountDownLatch initialized;
+        private final Future<Boolean> stopFuture;
+
+        private WaitingService(String name, CountDownLatch initialized, Future<Boolean> stopFuture) {
+
+            super(name);
+            this.initialized = initialized;
+            this.stopFuture = stopFuture;
+        }
+
+        @Override
+        protected void initialize() {
+
+            whenResolved(stopFuture, stop -> terminate());
+            initialized.countDown();
+        }
+    }
+
+    private static class DoubleEvent implements Event<Integer> {
+
+        private final int number;
+
+        private DoubleEvent(int number) {
+
+            this.number = number;
+        }
+    }
+
+    private static class StopBroadcast implements Broadcast {
+
+    }
+}
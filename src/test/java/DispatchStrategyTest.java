@@ -0,0 +1,164 @@
+import bgu.spl.mics.DispatchStrategy;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.LeastQueueDepthDispatch;
+import bgu.spl.mics.Mailbox;
+import bgu.spl.mics.PowerOfTwoChoicesDispatch;
+import bgu.spl.mics.RingBufferMailbox;
+import bgu.spl.mics.RoundRobinDispatch;
+import bgu.spl.mics.StickyKeyDispatch;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This is a Unit Test for the {@link DispatchStrategy} public interface and its implementations.
+ */
+
+public class DispatchStrategyTest {
+
+    /**
+     * The mailboxes of the subscribers the strategies choose from
+     */
+    private Mailbox[] testCandidates;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testCandidates = new Mailbox[3];
+        for (int i = 0; i < testCandidates.length; i++)
+            testCandidates[i] = new RingBufferMailbox();
+    }
+
+    /**
+     * Test method for {@link RoundRobinDispatch#select(Event, Mailbox[])}:
+     * The subscribers are chosen in turn
+     */
+    @Test
+    public void roundRobinSelect() {
+
+        DispatchStrategy testStrategyInstance = new RoundRobinDispatch();
+
+        for (int i = 0; i < 7; i++)
+            Assert.assertEquals("The subscribers were not chosen in turn", i % 3, testStrategyInstance.select(new TestEvent(i), testCandidates));
+    }
+
+    /**
+     * Test method for {@link RoundRobinDispatch#selectAll(List, Mailbox[], int[])}:
+     * A batch is dispatched in turn, carrying on from the events chosen one by one before it
+     */
+    @Test
+    public void roundRobinSelectAll() {
+
+        DispatchStrategy testStrategyInstance = new RoundRobinDispatch();
+        testStrategyInstance.select(new TestEvent(0), testCandidates);
+
+        List<TestEvent> batch = Arrays.asList(new TestEvent(1), new TestEvent(2), new TestEvent(3), new TestEvent(4));
+        int[] targets = new int[batch.size()];
+        testStrategyInstance.selectAll(batch, testCandidates, targets);
+
+        Assert.assertArrayEquals("The batch was not dispatched in turn", new int[] {1, 2, 0, 1}, targets);
+        Assert.assertEquals("The batch did not advance the turn", 2, testStrategyInstance.select(new TestEvent(5), testCandidates));
+    }
+
+    /**
+     * Test method for {@link RoundRobinDispatch#selectAll(List, Mailbox[], int[])}:
+     * An empty batch chooses nothing and keeps the turn
+     */
+    @Test
+    public void roundRobinSelectAllEmpty() {
+
+        DispatchStrategy testStrategyInstance = new RoundRobinDispatch();
+        testStrategyInstance.selectAll(Collections.<TestEvent>emptyList(), testCandidates, new int[0]);
+
+        Assert.assertEquals("An empty batch advanced the turn", 0, testStrategyInstance.select(new TestEvent(0), testCandidates));
+    }
+
+    /**
+     * Test method for {@link LeastQueueDepthDispatch#select(Event, Mailbox[])}:
+     * The subscriber with the shallowest mailbox is always chosen
+     */
+    @Test
+    public void leastQueueDepth() {
+
+        DispatchStrategy testStrategyInstance = new LeastQueueDepthDispatch();
+        fill(testCandidates[0], 3);
+        fill(testCandidates[2], 1);
+
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals("The shallowest mailbox was not chosen", 1, testStrategyInstance.select(new TestEvent(i), testCandidates));
+    }
+
+    /**
+     * Test method for {@link PowerOfTwoChoicesDispatch#select(Event, Mailbox[])}:
+     * The shallower of the two subscribers drawn is chosen - of two subscribers, always the shallower one
+     */
+    @Test
+    public void powerOfTwoChoices() {
+
+        DispatchStrategy testStrategyInstance = new PowerOfTwoChoicesDispatch();
+        Mailbox[] twoCandidates = {testCandidates[0], testCandidates[1]};
+        fill(testCandidates[0], 2);
+
+        for (int i = 0; i < 20; i++)
+            Assert.assertEquals("The shallower mailbox was not chosen", 1, testStrategyInstance.select(new TestEvent(i), twoCandidates));
+
+        Assert.assertEquals("The single subscriber was not chosen", 0, testStrategyInstance.select(new TestEvent(0), new Mailbox[] {testCandidates[0]}));
+    }
+
+    /**
+     * Test method for {@link StickyKeyDispatch#select(Event, Mailbox[])}:
+     * The events of a key always go to the same subscriber, and the events without a key are dispatched in turn
+     */
+    @Test
+    public void stickyKey() {
+
+        DispatchStrategy testStrategyInstance = new StickyKeyDispatch(event -> {
+
+            int number = ((TestEvent) event).number;
+            return number < 0 ? null : number % 4;
+        });
+
+        for (int key = 0; key < 4; key++) {
+
+            int chosen = testStrategyInstance.select(new TestEvent(key), testCandidates);
+
+            for (int i = 1; i < 5; i++)
+                Assert.assertEquals("The events of a key went to different subscribers", chosen, testStrategyInstance.select(new TestEvent(key + 4 * i), testCandidates));
+        }
+
+        for (int i = 0; i < 6; i++)
+            Assert.assertEquals("The events without a key were not dispatched in turn", i % 3, testStrategyInstance.select(new TestEvent(-1), testCandidates));
+    }
+
+    /**
+     * Puts messages into a mailbox, so it is deeper than an empty one
+     * @param mailbox  The mailbox
+     * @param messages The amount of messages to put
+     */
+    private static void fill(Mailbox mailbox, int messages) {
+
+        for (int i = 0; i < messages; i++)
+            mailbox.put(new TestEvent(i));
+    }
+
+    /**
+     * A numbered event used for the tests
+     */
+    private static class TestEvent implements Event<Integer> {
+
+        private final int number;
+
+        private TestEvent(int number) {
+
+            this.number = number;
+        }
+    }
+}
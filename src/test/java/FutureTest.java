@@ -3,6 +3,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 
@@ -82,9 +86,226 @@ public class FutureTest {
     @Test
     public void get1() {
 
+        Assert.assertNull("An unresolved future returned a result",
+                testFutureInstance.get(10, TimeUnit.MILLISECONDS));
+
         testFutureInstance.resolve(19);
-        Assert.assertNull("The string result is not correct",
+        Assert.assertEquals("The Integer result is not correct",
+                19, testFutureInstance.get(1, TimeUnit.MINUTES));
+    }
+
+    /**
+     * Test method for {@link Future#get(long, TimeUnit)}:
+     * A timed wait ends early on an interrupt, and keeps the interrupt status of the waiting thread
+     */
+    @Test(timeout = 10000)
+    public void getInterrupted() {
+
+        Thread.currentThread().interrupt();
+        Assert.assertNull("An unresolved future returned a result",
                 testFutureInstance.get(1, TimeUnit.MINUTES));
-        
+        Assert.assertTrue("The interrupt status was swallowed", Thread.interrupted());
+    }
+
+    /**
+     * Test method for {@link Future#get()}:
+     * A waiting thread gets the result once another thread resolves the future
+     */
+    @Test(timeout = 10000)
+    public void getResolvedByAnotherThread() throws InterruptedException {
+
+        Thread resolvingThread = new Thread(() -> {
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException exception) {
+                exception.printStackTrace();
+            }
+            testFutureInstance.resolve(19);
+        });
+
+        resolvingThread.start();
+        Assert.assertEquals("The Integer result is not correct", 19, testFutureInstance.get());
+        resolvingThread.join();
+    }
+
+    /**
+     * Test method for {@link Future#toCompletableFuture()}:
+     * The bridged future is completed with the result once the future is resolved
+     */
+    @Test
+    public void toCompletableFuture() {
+
+        java.util.concurrent.CompletableFuture<Integer> completableFuture = testFutureInstance.toCompletableFuture();
+        Assert.assertFalse("The bridged future was completed before the future was resolved", completableFuture.isDone());
+
+        testFutureInstance.resolve(19);
+        Assert.assertEquals("The bridged result is not correct", 19, (int) completableFuture.join());
+    }
+
+    /**
+     * Test method for {@link Future#onComplete(bgu.spl.mics.Callback)}:
+     * The callback is called with the result once the future is resolved, or right away if it is resolved already
+     */
+    @Test
+    public void onComplete() {
+
+        Object[] calledWith = new Object[1];
+
+        testFutureInstance.onComplete(result -> calledWith[0] = result);
+        Assert.assertNull("The callback was called before the future was resolved", calledWith[0]);
+
+        testFutureInstance.resolve(19);
+        Assert.assertEquals("The callback was not called with the result", 19, calledWith[0]);
+
+        testFutureInstance.onComplete(result -> calledWith[0] = "resolved already");
+        Assert.assertEquals("The callback of a resolved future was not called", "resolved already", calledWith[0]);
+    }
+
+    /**
+     * Test method for {@link Future#onComplete(bgu.spl.mics.Callback)}:
+     * A callback that throws is reported, and the callbacks registered after it are called still
+     */
+    @Test
+    public void onCompleteThrowing() {
+
+        Object[] calledWith = new Object[1];
+        Throwable[] reported = new Throwable[1];
+        Thread.UncaughtExceptionHandler previousHandler = Thread.currentThread().getUncaughtExceptionHandler();
+
+        testFutureInstance.onComplete(result -> {
+            throw new IllegalStateException("a failing callback");
+        });
+        testFutureInstance.onComplete(result -> calledWith[0] = result);
+
+        Thread.currentThread().setUncaughtExceptionHandler((thread, exception) -> reported[0] = exception);
+        try {
+            testFutureInstance.resolve(19);
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(previousHandler);
+        }
+
+        Assert.assertTrue("The exception of the callback was not reported", reported[0] instanceof IllegalStateException);
+        Assert.assertEquals("The callback after the failing one was not called", 19, calledWith[0]);
+    }
+
+    /**
+     * Test method for {@link Future#get(long, TimeUnit)}:
+     * A timed wait that ends unresolved leaves nothing behind, however often the future is polled
+     */
+    @Test
+    public void getTimedOutRepeatedly() throws ReflectiveOperationException {
+
+        for (int i = 0; i < 1000; i++)
+            Assert.assertNull("An unresolved future returned a result", testFutureInstance.get(1, TimeUnit.MICROSECONDS));
+
+        java.lang.reflect.Field stateField = Future.class.getDeclaredField("state");
+        stateField.setAccessible(true);
+        Assert.assertNull("The waiters of the timed out waits were kept", stateField.get(testFutureInstance));
+
+        testFutureInstance.resolve(19);
+        Assert.assertEquals("The Integer result is not correct", 19, testFutureInstance.get(1, TimeUnit.MICROSECONDS));
+    }
+
+    /**
+     * Test method for {@link Future#thenApply(java.util.function.Function)} and
+     * {@link Future#thenCompose(java.util.function.Function)}:
+     * The returned futures are resolved with the applied result once the future is resolved
+     */
+    @Test
+    public void thenApplyAndCompose() {
+
+        Future<Integer> nextFuture = new Future<>();
+        Future<Integer> appliedFuture = testFutureInstance.thenApply(result -> (Integer) result + 1);
+        Future<Integer> composedFuture = testFutureInstance.thenCompose(result -> nextFuture);
+
+        testFutureInstance.resolve(19);
+        Assert.assertEquals("The applied result is not correct", 20, (int) appliedFuture.get());
+        Assert.assertFalse("The composed future was resolved before the next future", composedFuture.isDone());
+
+        nextFuture.resolve(7);
+        Assert.assertEquals("The composed result is not correct", 7, (int) composedFuture.get());
+    }
+
+    /**
+     * Test method for {@link Future#thenApply(java.util.function.Function)} and
+     * {@link Future#thenCompose(java.util.function.Function)}:
+     * When the function throws, the returned futures are resolved with null, and the exception is reported
+     */
+    @Test
+    public void thenApplyAndComposeThrowing() {
+
+        List<Throwable> reported = new ArrayList<>();
+        Future<Integer> appliedFuture = testFutureInstance.thenApply(result -> {
+            throw new IllegalStateException("a failing function");
+        });
+        Future<Integer> composedFuture = testFutureInstance.thenCompose(result -> {
+            throw new IllegalStateException("a failing function");
+        });
+
+        Thread.UncaughtExceptionHandler previousHandler = Thread.currentThread().getUncaughtExceptionHandler();
+        Thread.currentThread().setUncaughtExceptionHandler((thread, exception) -> reported.add(exception));
+        try {
+            testFutureInstance.resolve(19);
+        } finally {
+            Thread.currentThread().setUncaughtExceptionHandler(previousHandler);
+        }
+
+        Assert.assertTrue("The applied future was not resolved", appliedFuture.isDone());
+        Assert.assertNull("The applied future was not resolved with null", appliedFuture.get());
+        Assert.assertTrue("The composed future was not resolved", composedFuture.isDone());
+        Assert.assertNull("The composed future was not resolved with null", composedFuture.get());
+        Assert.assertEquals("The exceptions of the functions were not reported", 2, reported.size());
+    }
+
+    /**
+     * Test method for {@link Future#allOf(List)}:
+     * The combined future is resolved with all the results in order, once the last future is resolved
+     */
+    @Test
+    public void allOf() {
+
+        Future<Integer> firstFuture = new Future<>(), secondFuture = new Future<>();
+        Future<List<Integer>> combinedFuture = Future.allOf(Arrays.asList(firstFuture, null, secondFuture));
+
+        secondFuture.resolve(2);
+        Assert.assertNull("The combined future was resolved before all the futures", combinedFuture.get(10, TimeUnit.MILLISECONDS));
+
+        firstFuture.resolve(1);
+        Assert.assertEquals("The combined results are not correct", Arrays.asList(1, null, 2), combinedFuture.get());
+        Assert.assertTrue("Combining no futures was not resolved", Future.allOf(Collections.<Future<Integer>>emptyList()).isDone());
+    }
+
+    /**
+     * Test method for {@link Future#anyOf(List)}:
+     * The combined future is resolved with the first result only
+     */
+    @Test
+    public void anyOf() {
+
+        Future<Integer> firstFuture = new Future<>(), secondFuture = new Future<>();
+        Future<Integer> anyFuture = Future.anyOf(Arrays.asList(firstFuture, secondFuture));
+
+        secondFuture.resolve(2);
+        firstFuture.resolve(1);
+        Assert.assertEquals("The first result is not correct", 2, (int) anyFuture.get());
+    }
+
+    /**
+     * Test method for {@link Future#flatten(Future)}:
+     * The flat future is resolved with the result of the inner future
+     */
+    @Test
+    public void flatten() {
+
+        Future<Integer> innerFuture = new Future<>();
+        Future<Future<Integer>> nestedFuture = new Future<>();
+        Future<Integer> flatFuture = Future.flatten(nestedFuture);
+
+        nestedFuture.resolve(innerFuture);
+        Assert.assertFalse("The flat future was resolved before the inner future", flatFuture.isDone());
+
+        innerFuture.resolve(19);
+        Assert.assertEquals("The flat result is not correct", 19, (int) flatFuture.get());
     }
-}
\ No newline at end of file
+}
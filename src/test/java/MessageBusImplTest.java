@@ -0,0 +1,499 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.EventEnvelope;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.Mailbox;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.OverflowCounters;
+import bgu.spl.mics.OverflowPolicy;
+import bgu.spl.mics.RingBufferMailbox;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link MessageBusImpl} public class.
+ * The message-bus is a singleton, so every test uses event types of its own.
+ */
+
+public class MessageBusImplTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private MessageBusImpl testMessageBusInstance;
+
+    /**
+     * The mailboxes allocated to the micro-services registered by a test
+     */
+    private Map<MicroService, Mailbox> testMailboxes;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testMessageBusInstance = MessageBusImpl.getInstance();
+        testMailboxes = new IdentityHashMap<>();
+
+        testMessageBusInstance.setMailboxFactory(m -> {
+
+            Mailbox mailbox = new RingBufferMailbox(4); // a small ring, so the overflow queue is used as well
+            testMailboxes.put(m, mailbox);
+            return mailbox;
+        });
+    }
+
+    /**
+     * Tear down after a test
+     */
+    @After
+    public void tearDown() {
+
+        for (MicroService m : testMailboxes.keySet())
+            testMessageBusInstance.unregister(m);
+
+        testMessageBusInstance.setMailboxFactory(m -> new RingBufferMailbox());
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#sendEvent(Event)} and {@link MessageBusImpl#sendEvents(List)}:
+     * Events are dispatched to the subscribers of their type in a round-robin fashion, batches as well,
+     * and an event no micro-service subscribed to gets no future
+     */
+    @Test
+    public void sendEventRoundRobin() {
+
+        MicroService firstConsumer = register("first round-robin consumer", RoundRobinEvent.class);
+        MicroService secondConsumer = register("second round-robin consumer", RoundRobinEvent.class);
+
+        for (int i = 0; i < 4; i++)
+            Assert.assertNotNull("An event with subscribers got no future", testMessageBusInstance.sendEvent(new RoundRobinEvent(i)));
+
+        Assert.assertEquals("The events were not dispatched in turn", 2, testMailboxes.get(firstConsumer).size());
+        Assert.assertEquals("The events were not dispatched in turn", 2, testMailboxes.get(secondConsumer).size());
+
+        List<Future<Integer>> batchFutures = testMessageBusInstance.sendEvents(Arrays.asList(new RoundRobinEvent(4), new RoundRobinEvent(5)));
+
+        Assert.assertEquals("A future is missing for the batch", 2, batchFutures.size());
+        Assert.assertEquals("The batch was not dispatched in turn", 3, testMailboxes.get(firstConsumer).size());
+        Assert.assertEquals("The batch was not dispatched in turn", 3, testMailboxes.get(secondConsumer).size());
+
+        Assert.assertNull("An event with no subscribers got a future", testMessageBusInstance.sendEvent(new UnsubscribedEvent(0)));
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#sendBroadcast(Broadcast)}:
+     * Every subscriber reads every broadcast sent after it subscribed, in the order they were sent
+     */
+    @Test(timeout = 10000)
+    public void sendBroadcastToEverySubscriber() throws InterruptedException {
+
+        MicroService firstReader = registerForBroadcasts("first broadcast reader");
+        MicroService secondReader = registerForBroadcasts("second broadcast reader");
+
+        LogBroadcast firstBroadcast = new LogBroadcast();
+        testMessageBusInstance.sendBroadcast(firstBroadcast);
+
+        MicroService lateReader = registerForBroadcasts("late broadcast reader");
+
+        LogBroadcast secondBroadcast = new LogBroadcast(), thirdBroadcast = new LogBroadcast();
+        testMessageBusInstance.sendBroadcast(secondBroadcast);
+        testMessageBusInstance.sendBroadcast(thirdBroadcast);
+
+        for (MicroService reader : Arrays.asList(firstReader, secondReader)) {
+            Assert.assertSame("A subscriber missed a broadcast", firstBroadcast, testMessageBusInstance.awaitMessage(reader));
+            Assert.assertSame("The broadcasts were not read in order", secondBroadcast, testMessageBusInstance.awaitMessage(reader));
+            Assert.assertSame("The broadcasts were not read in order", thirdBroadcast, testMessageBusInstance.awaitMessage(reader));
+        }
+
+        Assert.assertSame("A late subscriber read a broadcast sent before it subscribed", secondBroadcast, testMessageBusInstance.awaitMessage(lateReader));
+        Assert.assertSame("The broadcasts were not read in order", thirdBroadcast, testMessageBusInstance.awaitMessage(lateReader));
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#unregister(MicroService)}:
+     * The events pending in the mailbox of an unregistered micro-service are resolved with null,
+     * and no event is dispatched to it afterwards
+     */
+    @Test
+    public void unregister() {
+
+        MicroService leavingConsumer = register("leaving consumer", UnregisterEvent.class);
+
+        List<Future<Integer>> pendingFutures = new ArrayList<>();
+        for (int i = 0; i < 6; i++) // more than the ring holds, so the overflow queue is drained as well
+            pendingFutures.add(testMessageBusInstance.sendEvent(new UnregisterEvent(i)));
+
+        testMessageBusInstance.unregister(leavingConsumer);
+
+        for (Future<Integer> pendingFuture : pendingFutures) {
+            Assert.assertTrue("A pending event was not resolved", pendingFuture.isDone());
+            Assert.assertNull("A pending event was resolved with a result", pendingFuture.get());
+        }
+
+        Assert.assertNull("An event was dispatched to an unregistered micro-service", testMessageBusInstance.sendEvent(new UnregisterEvent(6)));
+
+        MicroService stayingConsumer = register("staying consumer", UnregisterEvent.class);
+        Assert.assertNotNull("An event was not dispatched to the remaining subscriber", testMessageBusInstance.sendEvent(new UnregisterEvent(7)));
+        Assert.assertEquals("The event was not dispatched to the remaining subscriber", 1, testMailboxes.get(stayingConsumer).size());
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#setWorkStealing(Class, boolean)}:
+     * An idle subscriber steals the newest event from the mailbox of a busy one, which then skips it
+     */
+    @Test(timeout = 10000)
+    public void workStealing() throws InterruptedException {
+
+        MicroService busyConsumer = register("busy consumer", StealEvent.class);
+        MicroService idleConsumer = register("idle consumer", StealEvent.class);
+        testMessageBusInstance.setDispatchStrategy(StealEvent.class, (event, candidates) -> 0); // every event goes to the busy consumer
+        testMessageBusInstance.setWorkStealing(StealEvent.class, true);
+
+        for (int i = 0; i < 3; i++)
+            testMessageBusInstance.sendEvent(new StealEvent(i));
+
+        EventEnvelope<?> stolenEnvelope = (EventEnvelope<?>) testMessageBusInstance.awaitMessage(idleConsumer);
+
+        Assert.assertEquals("The newest event was not stolen", 2, ((TestEvent) stolenEnvelope.getEvent()).number);
+        Assert.assertEquals("The steal was not counted", 1, testMessageBusInstance.getStealCount(StealEvent.class));
+        Assert.assertEquals("The stolen event is still counted in the busy mailbox", 2, testMailboxes.get(busyConsumer).size());
+
+        for (int i = 0; i < 2; i++) {
+            EventEnvelope<?> envelope = (EventEnvelope<?>) testMessageBusInstance.awaitMessage(busyConsumer);
+            Assert.assertEquals("The busy consumer did not get its own events in order", i, ((TestEvent) envelope.getEvent()).number);
+        }
+
+        Assert.assertEquals("The stolen event is still counted in the busy mailbox", 0, testMailboxes.get(busyConsumer).size());
+    }
+
+    /**
+     * Test method for {@link OverflowPolicy#BLOCK}:
+     * A sender waits for a full mailbox to have room, and is rejected once the timeout passed
+     */
+    @Test(timeout = 10000)
+    public void overflowBlock() throws InterruptedException {
+
+        testMessageBusInstance.setOverflowPolicy(BlockEvent.class, 2, OverflowPolicy.BLOCK, 500, TimeUnit.MILLISECONDS);
+        MicroService consumer = register("block consumer", BlockEvent.class);
+
+        testMessageBusInstance.sendEvent(new BlockEvent(0));
+        testMessageBusInstance.sendEvent(new BlockEvent(1));
+
+        Thread consumerThread = new Thread(() -> {
+            try {
+                TimeUnit.MILLISECONDS.sleep(50);
+                testMessageBusInstance.awaitMessage(consumer); // makes room for a single event
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumerThread.start();
+
+        long startNanos = System.nanoTime();
+        Future<Integer> blockedFuture = testMessageBusInstance.sendEvent(new BlockEvent(2));
+        long blockedNanos = System.nanoTime() - startNanos;
+        consumerThread.join();
+
+        Assert.assertFalse("The blocked event was rejected", blockedFuture.isDone());
+        Assert.assertTrue("The sender did not wait for room", blockedNanos >= TimeUnit.MILLISECONDS.toNanos(40));
+
+        Future<Integer> rejectedFuture = testMessageBusInstance.sendEvent(new BlockEvent(3)); // no one makes room anymore
+
+        Assert.assertTrue("The event was not rejected once the timeout passed", rejectedFuture.isDone());
+        Assert.assertNull("The rejected event was given a result", rejectedFuture.get());
+
+        OverflowCounters typeCounters = testMessageBusInstance.getOverflowCounters(BlockEvent.class);
+        Assert.assertEquals("The amount of blocked events is not correct", 1, typeCounters.getBlocked());
+        Assert.assertEquals("The amount of rejected events is not correct", 1, typeCounters.getRejected());
+        Assert.assertEquals("The mailbox exceeded its capacity", 2, testMailboxes.get(consumer).size());
+    }
+
+    /**
+     * Test method for {@link OverflowPolicy#FAIL_FAST}:
+     * The events sent to a full mailbox are rejected right away, and the events waiting in it are kept
+     */
+    @Test
+    public void overflowFailFast() {
+
+        testMessageBusInstance.setOverflowPolicy(FailFastEvent.class, 4, OverflowPolicy.FAIL_FAST, 0, TimeUnit.MILLISECONDS);
+        MicroService consumer = register("fail-fast consumer", FailFastEvent.class);
+
+        List<Future<Integer>> sentFutures = new ArrayList<>();
+        for (int i = 0; i < 10; i++)
+            sentFutures.add(testMessageBusInstance.sendEvent(new FailFastEvent(i)));
+
+        for (int i = 0; i < 4; i++)
+            Assert.assertFalse("An event admitted to the mailbox was rejected", sentFutures.get(i).isDone());
+        for (int i = 4; i < 10; i++)
+            Assert.assertTrue("An event sent to the full mailbox was not rejected", sentFutures.get(i).isDone());
+
+        OverflowCounters typeCounters = testMessageBusInstance.getOverflowCounters(FailFastEvent.class);
+        Assert.assertEquals("The amount of rejected events is not correct", 6, typeCounters.getRejected());
+        Assert.assertEquals("The rejected events were not counted for the mailbox", 6, testMessageBusInstance.getOverflowCounters(consumer).getRejected());
+        Assert.assertEquals("The mailbox exceeded its capacity", 4, testMailboxes.get(consumer).size());
+    }
+
+    /**
+     * Test method for {@link OverflowPolicy#SHED_OLDEST}:
+     * Every event sent to a full mailbox is admitted in place of the oldest waiting one - however many were shed
+     * before - and the consumer gets only the events that were not shed
+     */
+    @Test(timeout = 10000)
+    public void overflowShedOldest() throws InterruptedException {
+
+        testMessageBusInstance.setOverflowPolicy(ShedEvent.class, 4, OverflowPolicy.SHED_OLDEST, 0, TimeUnit.MILLISECONDS);
+        MicroService consumer = register("shed consumer", ShedEvent.class);
+        Mailbox consumerMailbox = testMailboxes.get(consumer);
+
+        List<Future<Integer>> sentFutures = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            sentFutures.add(testMessageBusInstance.sendEvent(new ShedEvent(i)));
+
+        OverflowCounters typeCounters = testMessageBusInstance.getOverflowCounters(ShedEvent.class);
+        Assert.assertEquals("The amount of shed events is not correct", 26, typeCounters.getShed());
+        Assert.assertEquals("Events were rejected", 0, typeCounters.getRejected());
+        Assert.assertEquals("The mailbox exceeded its capacity", 4, consumerMailbox.size());
+
+        for (int i = 0; i < 26; i++) {
+            Assert.assertTrue("The oldest events were not shed", sentFutures.get(i).isDone());
+            Assert.assertNull("A shed event was given a result", sentFutures.get(i).get());
+        }
+
+        for (int i = 26; i < 30; i++) {
+            EventEnvelope<?> envelope = (EventEnvelope<?>) testMessageBusInstance.awaitMessage(consumer);
+            Assert.assertEquals("The consumer did not get the newest events in order", i, ((TestEvent) envelope.getEvent()).number);
+        }
+
+        Assert.assertTrue("The shed events were not skipped", consumerMailbox.isEmpty());
+        Assert.assertEquals("The size of the drained mailbox is not correct", 0, consumerMailbox.size());
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#complete(Event, Object)}:
+     * An event cannot be completed from a thread no micro-service runs its event loop on
+     */
+    @Test(timeout = 10000)
+    public void completeFromAnotherThread() throws InterruptedException {
+
+        RuntimeException[] thrown = new RuntimeException[1];
+
+        Thread completingThread = new Thread(() -> {
+            try {
+                testMessageBusInstance.complete(new CompletedEvent(0), 0);
+            } catch (RuntimeException exception) {
+                thrown[0] = exception;
+            }
+        });
+        completingThread.start();
+        completingThread.join();
+
+        Assert.assertTrue("Completing from another thread did not throw", thrown[0] instanceof IllegalStateException);
+    }
+
+    /**
+     * Test method for {@link MessageBusImpl#complete(Event, Object)}:
+     * An event sent twice, and completed twice by a later callback, resolves the futures of both sends
+     */
+    @Test(timeout = 10000)
+    public void completeEventSentTwice() throws InterruptedException {
+
+        CountDownLatch initialized = new CountDownLatch(1), handled = new CountDownLatch(2);
+        Thread serviceThread = new Thread(new CompletingService(initialized, handled));
+        serviceThread.start();
+        initialized.await();
+
+        CompletedEvent sentEvent = new CompletedEvent(19);
+        Future<Integer> firstFuture = testMessageBusInstance.sendEvent(sentEvent);
+        Future<Integer> secondFuture = testMessageBusInstance.sendEvent(sentEvent);
+        handled.await();
+
+        testMessageBusInstance.sendBroadcast(new CompleteBroadcast(sentEvent));
+
+        Assert.assertNotNull("The first send of the event was not completed", firstFuture.get(5, TimeUnit.SECONDS));
+        Assert.assertNotNull("The second send of the event was not completed", secondFuture.get(5, TimeUnit.SECONDS));
+        serviceThread.join();
+    }
+
+    /**
+     * Registers a micro-service subscribed to an event type - it is never run, so its mailbox is drained only by the test
+     * @param name      The name of the micro-service
+     * @param eventType The event type
+     * @return The registered micro-service
+     */
+    private MicroService register(String name, Class<? extends Event<Integer>> eventType) {
+
+        MicroService m = new TestService(name);
+        testMessageBusInstance.register(m);
+        testMessageBusInstance.subscribeEvent(eventType, m);
+        return m;
+    }
+
+    /**
+     * Registers a micro-service subscribed to {@link LogBroadcast} - it is never run, so its broadcasts are read only by the test
+     * @param name The name of the micro-service
+     * @return The registered micro-service
+     */
+    private MicroService registerForBroadcasts(String name) {
+
+        MicroService m = new TestService(name);
+        testMessageBusInstance.register(m);
+        testMessageBusInstance.subscribeBroadcast(LogBroadcast.class, m);
+        return m;
+    }
+
+    /**
+     * A micro-service that is never run
+     */
+    private static class TestService extends MicroService {
+
+        private TestService(String name) {
+
+            super(name);
+        }
+
+        @Override
+        protected void initialize() {
+
+        }
+    }
+
+    /**
+     * A micro-service whose event callback returns without completing the event - its events are completed by
+     * the callback of a {@link CompleteBroadcast}, after which it terminates
+     */
+    private static class CompletingService extends MicroService {
+
+        private final CountDownLatch initialized, handled;
+
+        private CompletingService(CountDownLatch initialized, CountDownLatch handled) {
+
+            super("completing service");
+            this.initialized = initialized;
+            this.handled = handled;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(CompletedEvent.class, completedEvent -> handled.countDown());
+            subscribeBroadcast(CompleteBroadcast.class, completeBroadcast -> {
+
+                complete(completeBroadcast.event, completeBroadcast.event.number);
+                complete(completeBroadcast.event, completeBroadcast.event.number);
+                terminate();
+            });
+            initialized.countDown();
+        }
+    }
+
+    /**
+     * A broadcast asking the {@link CompletingService} to complete an event
+     */
+    private static class CompleteBroadcast implements Broadcast {
+
+        private final TestEvent event;
+
+        private CompleteBroadcast(CompletedEvent event) {
+
+            this.event = event;
+        }
+    }
+
+    /**
+     * A broadcast sent to several readers
+     */
+    private static class LogBroadcast implements Broadcast {
+
+    }
+
+    /**
+     * A numbered event used for the tests
+     */
+    private static class TestEvent implements Event<Integer> {
+
+        private final int number;
+
+        private TestEvent(int number) {
+
+            this.number = number;
+        }
+    }
+
+    private static class BlockEvent extends TestEvent {
+
+        private BlockEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class FailFastEvent extends TestEvent {
+
+        private FailFastEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class ShedEvent extends TestEvent {
+
+        private ShedEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class RoundRobinEvent extends TestEvent {
+
+        private RoundRobinEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class UnsubscribedEvent extends TestEvent {
+
+        private UnsubscribedEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class CompletedEvent extends TestEvent {
+
+        private CompletedEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class StealEvent extends TestEvent {
+
+        private StealEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class UnregisterEvent extends TestEvent {
+
+        private UnregisterEvent(int number) {
+
+            super(number);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MessageBusMXBean;
+import bgu.spl.mics.MessageTypeStatistics;
+import bgu.spl.mics.MicroService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link MessageBusMXBean} public interface, read through the platform MBean server
+ * as a management client would. The message-bus is a singleton, so the tests use message types of their own.
+ */
+
+public class MessageBusMXBeanTest {
+
+    /**
+     * OUT (Object Under Test) - a proxy of the bean registered in the platform MBean server
+     */
+    private MessageBusMXBean testBusBean;
+
+    /**
+     * The thread running the micro-service of a test
+     */
+    private Thread testServiceThread;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() throws JMException, InterruptedException {
+
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        testBusBean = JMX.newMXBeanProxy(mBeanServer, new ObjectName("bgu.spl.mics:type=MessageBus"), MessageBusMXBean.class);
+
+        CountDownLatch initialized = new CountDownLatch(1);
+        testServiceThread = new Thread(new TestService("measured service", initialized));
+        testServiceThread.start();
+        initialized.await();
+    }
+
+    /**
+     * Tear down after a test
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+
+        MessageBusImpl.getInstance().sendBroadcast(new StopBroadcast());
+        testServiceThread.join();
+    }
+
+    /**
+     * Test method for {@link MessageBusMXBean#getMessagesHandled()} and {@link MessageBusMXBean#getMessageTypeStatistics()}:
+     * The messages handled by a micro-service are counted by their type under its name, and only events have wait times -
+     * read through a proxy, so the statistics are rebuilt from the open data the MBean server returns
+     */
+    @Test(timeout = 10000)
+    public void getMessageTypeStatistics() throws InterruptedException {
+
+        for (int i = 0; i < 3; i++) {
+            Future<Integer> future = MessageBusImpl.getInstance().sendEvent(new StatsEvent(i));
+            Assert.assertEquals("The event was not handled", Integer.valueOf(i), future.get(5, TimeUnit.SECONDS));
+        }
+        MessageBusImpl.getInstance().sendBroadcast(new StatsBroadcast());
+
+        while (testBusBean.getMessagesHandled().get("measured service") < 4) // a message is recorded once its callback returned
+            TimeUnit.MILLISECONDS.sleep(10);
+
+        Assert.assertEquals("The handled messages were not all counted", Long.valueOf(4), testBusBean.getMessagesHandled().get("measured service"));
+        Assert.assertEquals("The events put into the mailbox were not all counted", Long.valueOf(3), testBusBean.getMessagesReceived().get("measured service"));
+
+        List<MessageTypeStatistics> serviceStatistics = testBusBean.getMessageTypeStatistics().get("measured service");
+        Assert.assertNotNull("The statistics of the micro-service are not keyed by its name", serviceStatistics);
+
+        Map<String, MessageTypeStatistics> statistics = new HashMap<>();
+        for (MessageTypeStatistics typeStatistics : serviceStatistics)
+            statistics.put(typeStatistics.getMessageType(), typeStatistics);
+
+        Assert.assertEquals("The events were not counted by their type", 3, statistics.get("StatsEvent").getHandledMessages());
+        Assert.assertEquals("The broadcast was not counted by its type", 1, statistics.get("StatsBroadcast").getHandledMessages());
+        Assert.assertEquals("The wait times of the events were not recorded", 3, sum(statistics.get("StatsEvent").getWaitTimeHistogram()));
+        Assert.assertEquals("A wait time was recorded for a broadcast", 0, sum(statistics.get("StatsBroadcast").getWaitTimeHistogram()));
+        Assert.assertEquals("The callback times were not recorded", 3, sum(statistics.get("StatsEvent").getCallbackTimeHistogram()));
+    }
+
+    /**
+     * Test method for {@link MessageBusMXBean#getEventsSent()}, {@link MessageBusMXBean#getEventsCompleted()}
+     * and {@link MessageBusMXBean#getBroadcastsSent()}:
+     * The messages sent through the message-bus are counted by their type
+     */
+    @Test(timeout = 10000)
+    public void getMessagesSent() throws InterruptedException {
+
+        for (int i = 0; i < 2; i++)
+            MessageBusImpl.getInstance().sendEvent(new SentEvent(i)).get(5, TimeUnit.SECONDS);
+        MessageBusImpl.getInstance().sendBroadcast(new SentBroadcast());
+
+        while (!Long.valueOf(2).equals(testBusBean.getEventsCompleted().get("SentEvent"))) // an event is counted right after its future is resolved
+            TimeUnit.MILLISECONDS.sleep(10);
+
+        Assert.assertEquals("The events sent were not counted", Long.valueOf(2), testBusBean.getEventsSent().get("SentEvent"));
+        Assert.assertEquals("The broadcast sent was not counted", Long.valueOf(1), testBusBean.getBroadcastsSent().get("SentBroadcast"));
+        Assert.assertTrue("The registered micro-service was not counted", testBusBean.getRegisteredServices() >= 1);
+    }
+
+    /**
+     * @param histogram The counts of a histogram
+     * @return The total count of the histogram
+     */
+    private static long sum(long[] histogram) {
+
+        long total = 0;
+        for (long count : histogram)
+            total += count;
+        return total;
+    }
+
+    /**
+     * A micro-service completing the events it gets with their numbers, until it gets a {@link StopBroadcast}
+     */
+    private static class TestService extends MicroService {
+
+        private final CountDownLatch initialized;
+
+        private TestService(String name, CountDownLatch initialized) {
+
+            super(name);
+            this.initialized = initialized;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(StatsEvent.class, statsEvent -> complete(statsEvent, ((TestEvent) statsEvent).number));
+            subscribeEvent(SentEvent.class, sentEvent -> complete(sentEvent, ((TestEvent) sentEvent).number));
+            subscribeBroadcast(StatsBroadcast.class, statsBroadcast -> { });
+            subscribeBroadcast(SentBroadcast.class, sentBroadcast -> { });
+            subscribeBroadcast(StopBroadcast.class, stopBroadcast -> terminate());
+            initialized.countDown();
+        }
+    }
+
+    /**
+     * A numbered event used for the tests
+     */
+    private static class TestEvent implements Event<Integer> {
+
+        private final int number;
+
+        private TestEvent(int number) {
+
+            this.number = number;
+        }
+    }
+
+    private static class StatsEvent extends TestEvent {
+
+        private StatsEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class SentEvent extends TestEvent {
+
+        private SentEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class StatsBroadcast implements Broadcast {
+
+    }
+
+    private static class SentBroadcast implements Broadcast {
+
+    }
+
+    private static class StopBroadcast implements Broadcast {
+
+    }
+}
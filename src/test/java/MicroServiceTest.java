@@ -0,0 +1,226 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link MicroService} public abstract class.
+ * The message-bus is a singleton, so the tests use message types of their own.
+ */
+
+public class MicroServiceTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private MessageBusImpl testMessageBusInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testMessageBusInstance = MessageBusImpl.getInstance();
+    }
+
+    /**
+     * Test method for {@link MicroService#run()}:
+     * Every message is handled by the callback of its own type - two micro-services subscribing to the same
+     * types in a different order as well
+     */
+    @Test(timeout = 10000)
+    public void runCallbackOfEachType() throws InterruptedException {
+
+        CountDownLatch initialized = new CountDownLatch(2);
+        List<String> readBroadcasts = new CopyOnWriteArrayList<>();
+
+        Thread forwardThread = new Thread(new TestService("forward subscriber", false, initialized, readBroadcasts));
+        Thread backwardThread = new Thread(new TestService("backward subscriber", true, initialized, readBroadcasts));
+        forwardThread.start();
+        backwardThread.start();
+        initialized.await();
+
+        for (int i = 0; i < 4; i++) { // round-robin - each micro-service gets two events of each type
+            Assert.assertEquals("An event was handled by another callback", Integer.valueOf(i + 10), testMessageBusInstance.sendEvent(new AddEvent(i)).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals("An event was handled by another callback", Integer.valueOf(i * 10), testMessageBusInstance.sendEvent(new MultiplyEvent(i)).get(5, TimeUnit.SECONDS));
+            Assert.assertEquals("An event was handled by another callback", Integer.valueOf(-i), testMessageBusInstance.sendEvent(new NegateEvent(i)).get(5, TimeUnit.SECONDS));
+        }
+
+        testMessageBusInstance.sendBroadcast(new StopBroadcast());
+        forwardThread.join();
+        backwardThread.join();
+
+        Assert.assertEquals("The broadcast was not handled by its callback in both micro-services", 2, readBroadcasts.size());
+    }
+
+    /**
+     * Test method for {@link MicroService#complete(Event, Object)}:
+     * Completing an event off the event loop of the micro-service, or an event it already completed, throws as the
+     * message-bus does - and leaves the future of the event as the callback resolved it
+     */
+    @Test(timeout = 10000)
+    public void completeOutOfTurn() throws InterruptedException {
+
+        List<RuntimeException> thrown = new CopyOnWriteArrayList<>();
+        Thread serviceThread = new Thread(new CompletingService(thrown));
+        serviceThread.start();
+
+        Future<Integer> future;
+        while ((future = testMessageBusInstance.sendEvent(new CompleteEvent(7))) == null) // not subscribed yet
+            Thread.yield();
+
+        Assert.assertEquals("The event was not completed by its callback", Integer.valueOf(7), future.get(5, TimeUnit.SECONDS));
+
+        testMessageBusInstance.sendBroadcast(new StopBroadcast());
+        serviceThread.join();
+
+        Assert.assertEquals("Completing out of turn did not throw both times", 2, thrown.size());
+        for (RuntimeException exception : thrown)
+            Assert.assertTrue("Completing out of turn threw another exception", exception instanceof IllegalStateException);
+    }
+
+    /**
+     * A micro-service completing the events it gets once from another thread and twice from its callback,
+     * keeping the exceptions thrown
+     */
+    private static class CompletingService extends MicroService {
+
+        private final List<RuntimeException> thrown;
+
+        private CompletingService(List<RuntimeException> thrown) {
+
+            super("completing service");
+            this.thrown = thrown;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(CompleteEvent.class, completeEvent -> {
+
+                Thread otherThread = new Thread(() -> tryComplete(completeEvent, -1));
+                otherThread.start();
+                try {
+                    otherThread.join();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+
+                complete(completeEvent, ((TestEvent) completeEvent).number);
+                tryComplete(completeEvent, -2);
+            });
+            subscribeBroadcast(StopBroadcast.class, stopBroadcast -> terminate());
+        }
+
+        private void tryComplete(CompleteEvent completeEvent, int result) {
+
+            try {
+                complete(completeEvent, result);
+            } catch (RuntimeException exception) {
+                thrown.add(exception);
+            }
+        }
+    }
+
+    /**
+     * A micro-service with a callback for each of the test event types, which terminates on a {@link StopBroadcast}
+     */
+    private static class TestService extends MicroService {
+
+        private final boolean backward;
+        private final CountDownLatch initialized;
+        private final List<String> readBroadcasts;
+
+        private TestService(String name, boolean backward, CountDownLatch initialized, List<String> readBroadcasts) {
+
+            super(name);
+            this.backward = backward;
+            this.initialized = initialized;
+            this.readBroadcasts = readBroadcasts;
+        }
+
+        @Override
+        protected void initialize() {
+
+            if (backward) {
+                subscribeBroadcast(StopBroadcast.class, this::stop);
+                subscribeEvent(NegateEvent.class, negateEvent -> complete(negateEvent, -((TestEvent) negateEvent).number));
+                subscribeEvent(MultiplyEvent.class, multiplyEvent -> complete(multiplyEvent, ((TestEvent) multiplyEvent).number * 10));
+                subscribeEvent(AddEvent.class, addEvent -> complete(addEvent, ((TestEvent) addEvent).number + 10));
+            } else {
+                subscribeEvent(AddEvent.class, addEvent -> complete(addEvent, ((TestEvent) addEvent).number + 10));
+                subscribeEvent(MultiplyEvent.class, multiplyEvent -> complete(multiplyEvent, ((TestEvent) multiplyEvent).number * 10));
+                subscribeEvent(NegateEvent.class, negateEvent -> complete(negateEvent, -((TestEvent) negateEvent).number));
+                subscribeBroadcast(StopBroadcast.class, this::stop);
+            }
+
+            initialized.countDown();
+        }
+
+        private void stop(StopBroadcast stopBroadcast) {
+
+            readBroadcasts.add(getName());
+            terminate();
+        }
+    }
+
+    /**
+     * A numbered event used for the tests
+     */
+    private static class TestEvent implements Event<Integer> {
+
+        private final int number;
+
+        private TestEvent(int number) {
+
+            this.number = number;
+        }
+    }
+
+    private static class AddEvent extends TestEvent {
+
+        private AddEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class MultiplyEvent extends TestEvent {
+
+        private MultiplyEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class NegateEvent extends TestEvent {
+
+        private NegateEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class CompleteEvent extends TestEvent {
+
+        private CompleteEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class StopBroadcast implements Broadcast {
+
+    }
+}
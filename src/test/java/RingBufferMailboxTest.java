@@ -0,0 +1,202 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Message;
+import bgu.spl.mics.RingBufferMailbox;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * This is a Unit Test for the {@link RingBufferMailbox} public class.
+ */
+
+public class RingBufferMailboxTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private RingBufferMailbox testMailboxInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testMailboxInstance = new RingBufferMailbox(4); // a small ring, so the overflow queue is used as well
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#put(Message)} and {@link RingBufferMailbox#poll()}:
+     * Messages are taken in the order they were put, also when the ring is full
+     */
+    @Test
+    public void putAndPoll() {
+
+        Assert.assertNull("An empty mailbox returned a message", testMailboxInstance.poll());
+
+        for (int i = 0; i < 10; i++)
+            testMailboxInstance.put(new TestMessage(i));
+
+        Assert.assertEquals("The size of the mailbox is not correct", 10, testMailboxInstance.size());
+
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals("The messages were not taken in order",
+                    i, ((TestMessage) testMailboxInstance.poll()).number);
+
+        Assert.assertTrue("The mailbox should be empty", testMailboxInstance.isEmpty());
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#drainTo(java.util.Collection, int)}:
+     * Up to the requested amount of messages are taken at once, control messages first and the rest in order
+     */
+    @Test
+    public void drainTo() {
+
+        for (int i = 1; i < 10; i++)
+            testMailboxInstance.put(new TestMessage(i));
+        testMailboxInstance.putControl(new TestMessage(0));
+
+        List<Message> drainedMessages = new ArrayList<>();
+
+        Assert.assertEquals("The amount of drained messages is not correct", 6, testMailboxInstance.drainTo(drainedMessages, 6));
+        Assert.assertEquals("The amount of drained messages is not correct", 4, testMailboxInstance.drainTo(drainedMessages, 6));
+
+        for (int i = 0; i < 10; i++)
+            Assert.assertEquals("The messages were not drained in order", i, ((TestMessage) drainedMessages.get(i)).number);
+
+        Assert.assertTrue("The mailbox should be empty", testMailboxInstance.isEmpty());
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#putControl(Message)}:
+     * Messages in the control lane are taken before all the other messages
+     */
+    @Test
+    public void putControl() {
+
+        testMailboxInstance.put(new TestMessage(1));
+        testMailboxInstance.put(new TestMessage(2));
+        testMailboxInstance.putControl(new TestMessage(0));
+
+        Assert.assertEquals("The size of the mailbox is not correct", 3, testMailboxInstance.size());
+
+        for (int i = 0; i < 3; i++)
+            Assert.assertEquals("The control message was not taken first",
+                    i, ((TestMessage) testMailboxInstance.poll()).number);
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#take()}:
+     * A parked consumer is woken by producers and sees the messages of each producer in order
+     */
+    @Test(timeout = 10000)
+    public void take() throws InterruptedException {
+
+        final int producers = 4, messagesPerProducer = 10000;
+        Thread[] producerThreads = new Thread[producers];
+
+        for (int i = 0; i < producers; i++) {
+
+            final int producer = i;
+            producerThreads[i] = new Thread(() -> {
+                for (int j = 0; j < messagesPerProducer; j++)
+                    testMailboxInstance.put(new TestMessage(producer * messagesPerProducer + j));
+            });
+            producerThreads[i].start();
+        }
+
+        int[] lastTaken = new int[producers];
+        Arrays.fill(lastTaken, -1);
+
+        for (int i = 0; i < producers * messagesPerProducer; i++) {
+
+            int number = ((TestMessage) testMailboxInstance.take()).number;
+            int producer = number / messagesPerProducer;
+            Assert.assertTrue("The messages of a producer were not taken in order", number > lastTaken[producer]);
+            lastTaken[producer] = number;
+        }
+
+        for (Thread producerThread : producerThreads)
+            producerThread.join();
+
+        Assert.assertTrue("The mailbox should be empty", testMailboxInstance.isEmpty());
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#peek(int)}:
+     * Peeking returns the messages of the ring by their position from the head without removing them
+     */
+    @Test
+    public void peek() {
+
+        for (int i = 0; i < 3; i++)
+            testMailboxInstance.put(new TestMessage(i));
+
+        Assert.assertEquals("The head was not peeked at", 0, ((TestMessage) testMailboxInstance.peek(0)).number);
+        Assert.assertEquals("The last message was not peeked at", 2, ((TestMessage) testMailboxInstance.peek(2)).number);
+        Assert.assertNull("A position past the last message returned a message", testMailboxInstance.peek(3));
+        Assert.assertEquals("Peeking removed a message", 3, testMailboxInstance.size());
+
+        testMailboxInstance.poll();
+        Assert.assertEquals("The head did not advance", 1, ((TestMessage) testMailboxInstance.peek(0)).number);
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#iterator()}:
+     * The iterator returns the waiting messages from the head, the spilled ones included, without removing them
+     */
+    @Test
+    public void iterator() {
+
+        for (int i = 0; i < 6; i++)
+            testMailboxInstance.put(new TestMessage(i));
+        testMailboxInstance.poll();
+
+        Iterator<Message> waitingMessages = testMailboxInstance.iterator();
+
+        for (int i = 1; i < 6; i++)
+            Assert.assertEquals("The messages were not iterated in order", i, ((TestMessage) waitingMessages.next()).number);
+
+        Assert.assertFalse("The iterator returned more messages than were waiting", waitingMessages.hasNext());
+        Assert.assertEquals("Iterating removed a message", 5, testMailboxInstance.size());
+    }
+
+    /**
+     * Test method for {@link RingBufferMailbox#abandon()} and {@link RingBufferMailbox#removeAbandoned()}:
+     * Abandoned messages are not counted in the size of the mailbox, but are still taken by the consumer
+     */
+    @Test
+    public void abandon() {
+
+        for (int i = 0; i < 3; i++)
+            testMailboxInstance.put(new TestMessage(i));
+
+        testMailboxInstance.abandon();
+        Assert.assertEquals("The abandoned message was counted", 2, testMailboxInstance.size());
+
+        testMailboxInstance.poll();
+        testMailboxInstance.removeAbandoned();
+        Assert.assertEquals("The size of the mailbox is not correct once the abandoned message was skipped", 2, testMailboxInstance.size());
+        Assert.assertFalse("The mailbox should not be empty", testMailboxInstance.isEmpty());
+    }
+
+    /**
+     * A numbered message used for the tests
+     */
+    private static class TestMessage implements Broadcast {
+
+        private final int number;
+
+        private TestMessage(int number) {
+
+            this.number = number;
+        }
+    }
+}
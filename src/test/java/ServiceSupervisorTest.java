@@ -0,0 +1,208 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ServiceSupervisor;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link ServiceSupervisor} public class.
+ * The message-bus is a singleton, so every test supervises an event type of its own.
+ */
+
+public class ServiceSupervisorTest {
+
+    /**
+     * The threads running the micro-services started by a test
+     */
+    private List<Thread> testServiceThreads;
+
+    /**
+     * Released by a test to let the micro-services complete the events they handle
+     */
+    private CountDownLatch testRelease;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testServiceThreads = new ArrayList<>();
+        testRelease = new CountDownLatch(1);
+
+        // messages taken in a batch are not seen by the supervisor - take them one by one, so the load is seen as it is
+        MessageBusImpl.getInstance().setBatchSizes(m -> m instanceof TestService ? 1 : MessageBusImpl.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Tear down after a test
+     */
+    @After
+    public void tearDown() {
+
+        MessageBusImpl.getInstance().setBatchSizes(m -> MessageBusImpl.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Test method for {@link ServiceSupervisor#sample()}:
+     * The group grows by one micro-service while its mailboxes are deeper than the target,
+     * and shrinks back to its least size once the load is gone
+     */
+    @Test(timeout = 10000)
+    public void sample() throws InterruptedException {
+
+        Semaphore initialized = new Semaphore(0);
+        ServiceSupervisor testSupervisorInstance = new ServiceSupervisor(ScaleEvent.class,
+                number -> new TestService("scaled service " + number, ScaleEvent.class, testRelease, initialized), this::startThread, 1, 3);
+
+        testSupervisorInstance.start(1);
+        initialized.acquire(); // the first micro-service subscribed
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < ServiceSupervisor.DEFAULT_DEPTH_TARGET + 2; i++) // deeper than the target of a single micro-service
+            futures.add(MessageBusImpl.getInstance().sendEvent(new ScaleEvent(i)));
+
+        testSupervisorInstance.sample();
+        Assert.assertEquals("The group did not grow under load", 2, testSupervisorInstance.getInstanceCount());
+
+        testSupervisorInstance.sample();
+        Assert.assertEquals("The group grew while its load fits its size", 2, testSupervisorInstance.getInstanceCount());
+
+        initialized.acquire(); // the second micro-service subscribed
+        testRelease.countDown();
+        for (int i = 0; i < futures.size(); i++)
+            Assert.assertEquals("An event was not completed", Integer.valueOf(i), futures.get(i).get(5, TimeUnit.SECONDS));
+
+        while (testSupervisorInstance.getInstanceCount() > 1) { // a micro-service counts as busy until it asks for its next message
+            testSupervisorInstance.sample();
+            TimeUnit.MILLISECONDS.sleep(10);
+        }
+        testServiceThreads.get(1).join(); // the retired micro-service leaves by itself
+
+        testSupervisorInstance.sample();
+        Assert.assertEquals("The group shrank below its least size", 1, testSupervisorInstance.getInstanceCount());
+
+        stopServices();
+    }
+
+    /**
+     * Test method for {@link ServiceSupervisor#start(int)}:
+     * The amount of micro-services started is clamped to the bounds of the group
+     */
+    @Test(timeout = 10000)
+    public void startClamped() throws InterruptedException {
+
+        Semaphore initialized = new Semaphore(0);
+        ServiceSupervisor testSupervisorInstance = new ServiceSupervisor(ClampEvent.class,
+                number -> new TestService("clamped service " + number, ClampEvent.class, testRelease, initialized), this::startThread, 2, 3);
+
+        testSupervisorInstance.start(10);
+        initialized.acquire(3); // every micro-service subscribed, so it gets the stop broadcast
+
+        Assert.assertEquals("More micro-services than the largest size of the group were started", 3, testSupervisorInstance.getInstanceCount());
+        Assert.assertEquals("The amount of micro-services started does not match the instance count", 3, testServiceThreads.size());
+
+        stopServices();
+    }
+
+    /**
+     * Runs a micro-service started by a supervisor on a thread of its own
+     * @param m The micro-service
+     */
+    private void startThread(MicroService m) {
+
+        Thread serviceThread = new Thread(m);
+        testServiceThreads.add(serviceThread);
+        serviceThread.start();
+    }
+
+    /**
+     * Stops the micro-services still running and waits for them to leave
+     */
+    private void stopServices() throws InterruptedException {
+
+        MessageBusImpl.getInstance().sendBroadcast(new StopBroadcast());
+
+        for (Thread serviceThread : testServiceThreads)
+            serviceThread.join();
+    }
+
+    /**
+     * A micro-service completing the events it gets with their numbers once released, until it gets a {@link StopBroadcast}
+     */
+    private static class TestService extends MicroService {
+
+        private final Class<? extends TestEvent> eventType;
+        private final CountDownLatch release;
+        private final Semaphore initialized;
+
+        private TestService(String name, Class<? extends TestEvent> eventType, CountDownLatch release, Semaphore initialized) {
+
+            super(name);
+            this.eventType = eventType;
+            this.release = release;
+            this.initialized = initialized;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(eventType, testEvent -> {
+
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                complete(testEvent, ((TestEvent) testEvent).number);
+            });
+            subscribeBroadcast(StopBroadcast.class, stopBroadcast -> terminate());
+            initialized.release();
+        }
+    }
+
+    /**
+     * A numbered event used for the tests
+     */
+    private static class TestEvent implements Event<Integer> {
+
+        private final int number;
+
+        private TestEvent(int number) {
+
+            this.number = number;
+        }
+    }
+
+    private static class ScaleEvent extends TestEvent {
+
+        private ScaleEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class ClampEvent extends TestEvent {
+
+        private ClampEvent(int number) {
+
+            super(number);
+        }
+    }
+
+    private static class StopBroadcast implements Broadcast {
+
+    }
+}
@@ -0,0 +1,101 @@
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.ShutdownCoordinator;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link ShutdownCoordinator} public class.
+ */
+
+public class ShutdownCoordinatorTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private ShutdownCoordinator testCoordinatorInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testCoordinatorInstance = new ShutdownCoordinator();
+    }
+
+    /**
+     * Test method for {@link ShutdownCoordinator#awaitTermination(long, TimeUnit)}:
+     * The waiting thread is released as soon as the last tracked micro-service left
+     */
+    @Test(timeout = 10000)
+    public void awaitTermination() throws InterruptedException {
+
+        List<Thread> serviceThreads = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            serviceThreads.add(new Thread(testCoordinatorInstance.track(new TestService("leaving service " + i, true))));
+
+        for (Thread serviceThread : serviceThreads)
+            serviceThread.start();
+
+        Assert.assertTrue("The micro-services were not counted down", testCoordinatorInstance.awaitTermination(5, TimeUnit.SECONDS));
+        Assert.assertEquals("A micro-service that left is still reported", Collections.emptyList(), testCoordinatorInstance.getRemainingServices());
+    }
+
+    /**
+     * Test method for {@link ShutdownCoordinator#interruptRemaining()}:
+     * The micro-services still running once the wait timed out are reported, and leave once interrupted
+     */
+    @Test(timeout = 10000)
+    public void interruptRemaining() throws InterruptedException {
+
+        Thread serviceThread = new Thread(testCoordinatorInstance.track(new TestService("stuck service", false)));
+        serviceThread.start();
+
+        Assert.assertFalse("The wait did not time out", testCoordinatorInstance.awaitTermination(50, TimeUnit.MILLISECONDS));
+        Assert.assertEquals("The running micro-service was not reported", Collections.singletonList("stuck service"), testCoordinatorInstance.interruptRemaining());
+
+        serviceThread.join();
+        Assert.assertEquals("The interrupted micro-service is still reported", Collections.emptyList(), testCoordinatorInstance.getRemainingServices());
+    }
+
+    /**
+     * Test method for {@link ShutdownCoordinator#track(MicroService)}:
+     * Any amount of micro-services can be tracked - more than the parties a phaser allows as well
+     */
+    @Test
+    public void trackMany() throws InterruptedException {
+
+        for (int i = 0; i < 70000; i++)
+            testCoordinatorInstance.track(new TestService("tracked service " + i, true));
+
+        Assert.assertFalse("The coordinator was released while no micro-service left", testCoordinatorInstance.awaitTermination(10, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * A micro-service that either leaves right away or waits for messages until interrupted
+     */
+    private static class TestService extends MicroService {
+
+        private final boolean leaveAtOnce;
+
+        private TestService(String name, boolean leaveAtOnce) {
+
+            super(name);
+            this.leaveAtOnce = leaveAtOnce;
+        }
+
+        @Override
+        protected void initialize() {
+
+            if (leaveAtOnce)
+                terminate();
+        }
+    }
+}
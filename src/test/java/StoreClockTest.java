@@ -0,0 +1,85 @@
+import bgu.spl.mics.application.passiveObjects.StoreClock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This is a Unit Test for the {@link StoreClock} public class.
+ * The clock is a singleton that never goes back, so the tests advance it far above the ticks of any store run,
+ * each test above the ticks of the test before it.
+ */
+
+public class StoreClockTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private StoreClock testClockInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testClockInstance = StoreClock.getInstance();
+    }
+
+    /**
+     * Test method for {@link StoreClock#getInstance()}:
+     * Retrieves the single instance of this class
+     */
+    @Test
+    public void getInstance() {
+
+        Assert.assertNotNull("The clock instance is null", testClockInstance);
+        Assert.assertSame("The clock instance is not a singleton", testClockInstance, StoreClock.getInstance());
+    }
+
+    /**
+     * Test method for {@link StoreClock#advance(int)}:
+     * The clock moves forward to the tick sent, and never goes back
+     */
+    @Test
+    public void advance() {
+
+        int tick = Math.max(testClockInstance.getCurrentTick(), 5000000) + 10;
+
+        testClockInstance.advance(tick);
+        Assert.assertEquals("The clock did not move to the tick sent", tick, testClockInstance.getCurrentTick());
+
+        testClockInstance.advance(tick - 5);
+        Assert.assertEquals("The clock went back", tick, testClockInstance.getCurrentTick());
+
+        testClockInstance.advance(tick + 1);
+        Assert.assertEquals("The clock did not move to the next tick", tick + 1, testClockInstance.getCurrentTick());
+    }
+
+    /**
+     * Test method for {@link StoreClock#getCurrentTick()}:
+     * A tick published by the time service is seen by a service running on another thread
+     */
+    @Test(timeout = 10000)
+    public void getCurrentTick() throws InterruptedException {
+
+        int tick = Math.max(testClockInstance.getCurrentTick(), 5000000) + 10;
+        AtomicInteger seenTick = new AtomicInteger();
+
+        Thread readerThread = new Thread(() -> {
+
+            int currentTick;
+            while ((currentTick = testClockInstance.getCurrentTick()) < tick)
+                Thread.yield();
+            seenTick.set(currentTick);
+        });
+        readerThread.start();
+
+        testClockInstance.advance(tick);
+        readerThread.join();
+
+        Assert.assertEquals("The reader did not see the tick published", tick, seenTick.get());
+    }
+}
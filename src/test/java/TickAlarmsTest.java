@@ -0,0 +1,78 @@
+import bgu.spl.mics.Future;
+import bgu.spl.mics.application.passiveObjects.TickAlarms;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+
+/**
+ * This is a Unit Test for the {@link TickAlarms} public class.
+ * The alarms are a singleton, so every test uses ticks of its own - far above the ticks of any store run,
+ * and the ticks a test waits for above those another test sounds.
+ */
+
+public class TickAlarmsTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private TickAlarms testAlarmsInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testAlarmsInstance = TickAlarms.getInstance();
+    }
+
+    /**
+     * Test method for {@link TickAlarms#getInstance()}:
+     * Retrieves the single instance of this class
+     */
+    @Test
+    public void getInstance() {
+
+        Assert.assertNotNull("The alarms instance is null", testAlarmsInstance);
+        Assert.assertSame("The alarms instance is not a singleton", testAlarmsInstance, TickAlarms.getInstance());
+    }
+
+    /**
+     * Test method for {@link TickAlarms#at(int)}:
+     * The services waiting for the same tick share its alarm
+     */
+    @Test
+    public void at() {
+
+        Assert.assertSame("The alarm of a tick is not shared", testAlarmsInstance.at(3000010), testAlarmsInstance.at(3000010));
+        Assert.assertNotSame("Two ticks share an alarm", testAlarmsInstance.at(3000010), testAlarmsInstance.at(3000011));
+        Assert.assertFalse("An alarm was sounded before its tick", testAlarmsInstance.at(3000010).isDone());
+    }
+
+    /**
+     * Test method for {@link TickAlarms#sound(int)}:
+     * Sounding a tick resolves the alarms of all the ticks up to it with their ticks, and no later alarm -
+     * an alarm set for a tick already sounded is resolved right away
+     */
+    @Test
+    public void sound() {
+
+        Future<Integer> skippedAlarm = testAlarmsInstance.at(2000001);
+        Future<Integer> soundedAlarm = testAlarmsInstance.at(2000002);
+        Future<Integer> laterAlarm = testAlarmsInstance.at(2000003);
+
+        testAlarmsInstance.sound(2000002);
+
+        Assert.assertEquals("The alarm of a skipped tick was not sounded with its tick", Integer.valueOf(2000001), skippedAlarm.get());
+        Assert.assertEquals("The alarm of the tick was not sounded with its tick", Integer.valueOf(2000002), soundedAlarm.get());
+        Assert.assertFalse("The alarm of a later tick was sounded", laterAlarm.isDone());
+
+        Future<Integer> lateAlarm = testAlarmsInstance.at(2000000);
+        Assert.assertTrue("An alarm set for a tick already sounded was not resolved right away", lateAlarm.isDone());
+        Assert.assertEquals("An alarm set for a tick already sounded was not resolved with its tick", Integer.valueOf(2000000), lateAlarm.get());
+
+        testAlarmsInstance.sound(2000003);
+        Assert.assertEquals("The alarm of a later tick was not sounded with its tick", Integer.valueOf(2000003), laterAlarm.get());
+    }
+}
@@ -0,0 +1,125 @@
+import bgu.spl.mics.TickScheduler;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link TickScheduler} public class.
+ */
+
+public class TickSchedulerTest {
+
+    /**
+     * Test method for {@link TickScheduler#run(int, int, java.util.function.IntConsumer)}:
+     * The ticks are run in order, each a period after the start of the one before it, without drifting
+     */
+    @Test
+    public void runOnTime() {
+
+        TickScheduler testSchedulerInstance = new TickScheduler(10, TimeUnit.MILLISECONDS, TickScheduler.OverrunPolicy.CATCH_UP);
+        List<Integer> ranTicks = new ArrayList<>();
+
+        long startNanos = System.nanoTime();
+        testSchedulerInstance.run(1, 5, ranTicks::add);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        Assert.assertEquals("The ticks were not run in order", Arrays.asList(1, 2, 3, 4, 5), ranTicks);
+        Assert.assertTrue("The last tick was run before its deadline", elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(40));
+        Assert.assertEquals("Ticks were skipped under the CATCH_UP policy", 0, testSchedulerInstance.getTicksSkipped());
+        Assert.assertEquals("The amount of ticks run is not correct", 5, testSchedulerInstance.getTicksRun());
+    }
+
+    /**
+     * Test method for {@link TickScheduler.OverrunPolicy#CATCH_UP}:
+     * The ticks due while a tick overran are all run, and the overrun is counted
+     */
+    @Test
+    public void catchUp() {
+
+        TickScheduler testSchedulerInstance = new TickScheduler(20, TimeUnit.MILLISECONDS, TickScheduler.OverrunPolicy.CATCH_UP);
+        List<Integer> ranTicks = new ArrayList<>();
+
+        testSchedulerInstance.run(1, 5, tick -> {
+
+            ranTicks.add(tick);
+            if (tick == 2)
+                sleep(55); // runs past the deadlines of ticks 3 and 4
+        });
+
+        Assert.assertEquals("A tick was not run under the CATCH_UP policy", Arrays.asList(1, 2, 3, 4, 5), ranTicks);
+        Assert.assertTrue("The overrun was not counted", testSchedulerInstance.getOverruns() >= 1);
+        Assert.assertTrue("The overrun was not recorded", testSchedulerInstance.getOverrunMean() > 0);
+    }
+
+    /**
+     * Test method for {@link TickScheduler.OverrunPolicy#SKIP}:
+     * The ticks due while a tick overran are skipped but the latest of them
+     */
+    @Test
+    public void skip() {
+
+        TickScheduler testSchedulerInstance = new TickScheduler(20, TimeUnit.MILLISECONDS, TickScheduler.OverrunPolicy.SKIP);
+        List<Integer> ranTicks = new ArrayList<>();
+
+        testSchedulerInstance.run(1, 10, tick -> {
+
+            ranTicks.add(tick);
+            if (tick == 2)
+                sleep(55); // runs past the deadlines of ticks 3 and 4
+        });
+
+        Assert.assertFalse("The tick skipped was run", ranTicks.contains(3));
+        Assert.assertTrue("The latest tick due was not run", ranTicks.contains(4));
+        Assert.assertEquals("The amount of ticks skipped is not correct", 1, testSchedulerInstance.getTicksSkipped());
+        Assert.assertEquals("The ticks run and skipped do not add up", 10, testSchedulerInstance.getTicksRun() + testSchedulerInstance.getTicksSkipped());
+    }
+
+    /**
+     * Test method for {@link TickScheduler#run(int, int, java.util.function.IntPredicate, java.util.function.IntConsumer)}:
+     * A tick overrunning never makes the scheduler skip a tick that must run, nor the last tick
+     */
+    @Test
+    public void skipMustRun() {
+
+        TickScheduler testSchedulerInstance = new TickScheduler(20, TimeUnit.MILLISECONDS, TickScheduler.OverrunPolicy.SKIP);
+        List<Integer> ranTicks = new ArrayList<>();
+
+        testSchedulerInstance.run(1, 4, tick -> tick == 3, tick -> {
+
+            ranTicks.add(tick);
+            if (tick == 2)
+                sleep(55); // runs past the deadlines of ticks 3 and 4
+        });
+
+        Assert.assertEquals("A tick that must run was skipped", Arrays.asList(1, 2, 3, 4), ranTicks);
+        Assert.assertEquals("Ticks were skipped", 0, testSchedulerInstance.getTicksSkipped());
+
+        ranTicks.clear();
+        testSchedulerInstance.run(1, 4, tick -> {
+
+            ranTicks.add(tick);
+            if (tick == 2)
+                sleep(55); // runs past the deadlines of ticks 3 and 4 - the last one ends the run
+        });
+
+        Assert.assertEquals("The last tick was skipped, or a tick before it was run", Arrays.asList(1, 2, 4), ranTicks);
+    }
+
+    /**
+     * Sleeps without being interrupted
+     * @param millis The time to sleep
+     */
+    private static void sleep(long millis) {
+
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+import bgu.spl.mics.Future;
+import bgu.spl.mics.TimingWheel;
+import bgu.spl.mics.VirtualClock;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link TimingWheel} public class.
+ */
+
+public class TimingWheelTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private TimingWheel testWheelInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testWheelInstance = new TimingWheel(10, TimeUnit.MILLISECONDS, 4); // a round of the wheel is 40 ms
+    }
+
+    /**
+     * Test method for {@link TimingWheel#schedule(long, TimeUnit)}:
+     * Timeouts falling on the same bucket in different rounds of the wheel are each resolved after their own delay,
+     * in the order of their deadlines
+     */
+    @Test(timeout = 10000)
+    public void scheduleOverSeveralRounds() throws InterruptedException {
+
+        testWheelInstance.schedule(0, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS); // starts the timer thread
+
+        long[] delays = {210, 50, 130, 10}; // ticks 21, 5, 13 and 1 ahead - all on the same bucket, in rounds 5, 1, 3 and 0
+        long[] scheduledNanos = new long[delays.length], resolvedNanos = new long[delays.length];
+        List<Long> resolvedDelays = new CopyOnWriteArrayList<>();
+        CountDownLatch resolved = new CountDownLatch(delays.length);
+
+        for (int i = 0; i < delays.length; i++) {
+
+            int index = i;
+            scheduledNanos[i] = System.nanoTime();
+            testWheelInstance.schedule(delays[i], TimeUnit.MILLISECONDS).onComplete(timeout -> {
+
+                resolvedNanos[index] = System.nanoTime();
+                resolvedDelays.add(delays[index]);
+                resolved.countDown();
+            });
+        }
+
+        resolved.await();
+
+        for (int i = 0; i < delays.length; i++)
+            Assert.assertTrue("A timeout was resolved before its delay passed", resolvedNanos[i] - scheduledNanos[i] >= TimeUnit.MILLISECONDS.toNanos(delays[i]));
+
+        Assert.assertEquals("The timeouts were not resolved in the order of their deadlines", Arrays.asList(10L, 50L, 130L, 210L), resolvedDelays);
+    }
+
+    /**
+     * Test method for {@link TimingWheel#schedule(long, TimeUnit)}:
+     * A timeout whose delay already passed is resolved on the next tick
+     */
+    @Test(timeout = 10000)
+    public void scheduleWithoutDelay() throws InterruptedException {
+
+        Future<Void> timeout = testWheelInstance.schedule(-5, TimeUnit.MILLISECONDS);
+
+        timeout.get(5, TimeUnit.SECONDS);
+        Assert.assertTrue("A timeout without delay was not resolved", timeout.isDone());
+    }
+
+    /**
+     * Test method for {@link TimingWheel#schedule(long, TimeUnit)}:
+     * While a virtual clock is active, the timeouts are resolved only once it advanced past them
+     */
+    @Test
+    public void scheduleOnVirtualClock() {
+
+        VirtualClock virtualClock = new VirtualClock();
+        virtualClock.activate();
+
+        try {
+            Future<Void> timeout = testWheelInstance.schedule(1, TimeUnit.SECONDS);
+
+            Assert.assertFalse("The timeout was resolved in wall-clock time", timeout.isDone());
+
+            virtualClock.advanceTo(999, null);
+            Assert.assertFalse("The timeout was resolved before the clock reached it", timeout.isDone());
+
+            virtualClock.advanceTo(1000, null);
+            Assert.assertTrue("The timeout was not resolved once the clock reached it", timeout.isDone());
+        } finally {
+            virtualClock.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+import bgu.spl.mics.Broadcast;
+import bgu.spl.mics.Event;
+import bgu.spl.mics.Future;
+import bgu.spl.mics.MessageBusImpl;
+import bgu.spl.mics.MicroService;
+import bgu.spl.mics.VirtualClock;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This is a Unit Test for the {@link VirtualClock} public class.
+ * The test thread drives the clock, so it passes no driver micro-service.
+ */
+
+public class VirtualClockTest {
+
+    /**
+     * OUT (Object Under Test)
+     */
+    private VirtualClock testClockInstance;
+
+    /**
+     * Set up for a test
+     */
+    @Before
+    public void setUp() {
+
+        testClockInstance = new VirtualClock();
+    }
+
+    /**
+     * Tear down after a test
+     */
+    @After
+    public void tearDown() {
+
+        testClockInstance.close();
+    }
+
+    /**
+     * Test method for {@link VirtualClock#schedule(long)} and {@link VirtualClock#advanceTo(long, MicroService)}:
+     * The timeouts are resolved in the order of their times once the clock advanced past them, and the clock never goes back
+     */
+    @Test
+    public void schedule() {
+
+        List<Long> resolvedTimeouts = new ArrayList<>();
+        for (long millis : new long[] {30, 10, 20})
+            testClockInstance.schedule(millis).onComplete(timeout -> resolvedTimeouts.add(millis));
+
+        testClockInstance.advanceTo(15, null);
+
+        Assert.assertEquals("The clock was not advanced", 15, testClockInstance.now());
+        Assert.assertEquals("A timeout was resolved before its time, or not at its time", Arrays.asList(10L), resolvedTimeouts);
+
+        testClockInstance.advanceTo(100, null);
+        testClockInstance.advanceTo(50, null);
+
+        Assert.assertEquals("The clock went back", 100, testClockInstance.now());
+        Assert.assertEquals("The timeouts were not resolved in the order of their times", Arrays.asList(10L, 20L, 30L), resolvedTimeouts);
+    }
+
+    /**
+     * Test method for {@link VirtualClock#close()}:
+     * Closing the clock resolves the pending timeouts, and the later ones at once
+     */
+    @Test
+    public void close() {
+
+        Future<Void> pendingTimeout = testClockInstance.schedule(10);
+        testClockInstance.activate();
+
+        testClockInstance.close();
+
+        Assert.assertTrue("A pending timeout was not resolved", pendingTimeout.isDone());
+        Assert.assertTrue("A timeout scheduled on a closed clock was not resolved", testClockInstance.schedule(10).isDone());
+        Assert.assertNull("The closed clock is still active", VirtualClock.getActive());
+    }
+
+    /**
+     * Test method for {@link VirtualClock#sleep(long)} and {@link VirtualClock#awaitQuiescence(MicroService)}:
+     * A micro-service sleeping on the clock counts as quiet, and wakes once the clock advanced past its wakeup time
+     */
+    @Test(timeout = 10000)
+    public void sleep() throws InterruptedException {
+
+        testClockInstance.activate();
+
+        CountDownLatch initialized = new CountDownLatch(1);
+        Thread serviceThread = new Thread(new SleepingService("sleeping service", initialized));
+        serviceThread.start();
+        initialized.await();
+
+        Future<Long> wakeupTime = MessageBusImpl.getInstance().sendEvent(new SleepEvent(50));
+        testClockInstance.awaitQuiescence(null); // the micro-service took the event and sleeps
+
+        testClockInstance.advanceTo(30, null);
+        Assert.assertFalse("The micro-service woke before its wakeup time", wakeupTime.isDone());
+
+        testClockInstance.advanceTo(100, null);
+        Assert.assertEquals("The micro-service did not wake at its wakeup time", Long.valueOf(50), wakeupTime.get(5, TimeUnit.SECONDS));
+
+        MessageBusImpl.getInstance().sendBroadcast(new StopBroadcast());
+        serviceThread.join();
+    }
+
+    /**
+     * A micro-service sleeping on the active clock for the time of each event it gets, and completing the event
+     * with the time it woke at - until it gets a {@link StopBroadcast}
+     */
+    private static class SleepingService extends MicroService {
+
+        private final CountDownLatch initialized;
+
+        private SleepingService(String name, CountDownLatch initialized) {
+
+            super(name);
+            this.initialized = initialized;
+        }
+
+        @Override
+        protected void initialize() {
+
+            subscribeEvent(SleepEvent.class, sleepEvent -> {
+
+                try {
+                    VirtualClock.getActive().sleep(sleepEvent.millis);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                complete(sleepEvent, VirtualClock.getActive().now());
+            });
+            subscribeBroadcast(StopBroadcast.class, stopBroadcast -> terminate());
+            initialized.countDown();
+        }
+    }
+
+    private static class SleepEvent implements Event<Long> {
+
+        private final long millis;
+
+        private SleepEvent(long millis) {
+
+            this.millis = millis;
+        }
+    }
+
+    private static class StopBroadcast implements Broadcast {
+
+    }
+}